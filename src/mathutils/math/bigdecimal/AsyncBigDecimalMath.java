@@ -0,0 +1,712 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import mathutils.math.context.CancellationToken;
+import mathutils.math.context.ComputeContext;
+
+/**
+ * Runs the functions of {@link BigDecimalMath} on an executor and returns their
+ * results as {@code CompletableFuture}s, so that a caller can start many
+ * evaluations without blocking a thread on each. By default every evaluation
+ * runs on its own virtual thread if the JVM has them, and otherwise on a cached
+ * pool of daemon threads. {@link #withParallelism(int)} bounds the number of
+ * evaluations that run at once, which suits CPU-bound work better.<br />
+ * <br />
+ * A request that is identical to one still in progress, with the same
+ * function, arguments and settings that affect the result, is not computed
+ * again but completes with the result of the first. Each caller gets its own
+ * future, which is completed with a {@code CancellationException} as soon as
+ * the deadline of its context passes or, within a few milliseconds, once its
+ * cancellation token is cancelled, even while the computation is still queued.
+ * The others keep waiting. The shared computation runs without the deadline,
+ * token and progress listener of any caller, and stops only when every caller
+ * has cancelled its future or given up in this way. Like a direct call, a
+ * running computation notices this at its next check for cancellation.<br />
+ * <br />
+ * {@link #close()} shuts down the executor if the facade created it. This class
+ * is thread-safe.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public class AsyncBigDecimalMath implements AutoCloseable {
+
+    private static final String CANCELLED = "The computation was cancelled";
+    private static final String DEADLINE_PASSED = "The deadline of the computation has passed";
+
+    /**
+     * How often the tokens of waiting callers are checked.
+     */
+    private static final long TOKEN_POLL_MILLIS = 10;
+
+    /**
+     * Completes the futures of callers whose deadline passes or whose token is
+     * cancelled.
+     */
+    private static final ScheduledExecutorService TIMER = createTimer();
+
+    private final Executor executor;
+    private final ExecutorService owned;
+    private final Map<Key, Computation> inFlight = new ConcurrentHashMap<Key, Computation>();
+
+    /**
+     * Creates a facade that runs every evaluation on a new virtual thread, or on
+     * a cached pool of daemon threads if the JVM has no virtual threads.
+     */
+    public AsyncBigDecimalMath() {
+	this(defaultExecutor(), true);
+    }
+
+    /**
+     * Creates a facade that runs evaluations on the given executor. The executor
+     * is not shut down when the facade is closed.
+     * 
+     * @param executor
+     *            The executor
+     */
+    public AsyncBigDecimalMath(Executor executor) {
+	this(executor, false);
+    }
+
+    private AsyncBigDecimalMath(Executor executor, boolean owned) {
+	this.executor = executor;
+	this.owned = owned ? (ExecutorService) executor : null;
+    }
+
+    /**
+     * Creates a facade that runs at most the given number of evaluations at once
+     * on its own {@code ForkJoinPool}, which is shut down when the facade is
+     * closed.
+     * 
+     * @param parallelism
+     *            The number of threads
+     * @return The facade
+     */
+    public static AsyncBigDecimalMath withParallelism(int parallelism) {
+	return new AsyncBigDecimalMath(new ForkJoinPool(parallelism), true);
+    }
+
+    public Executor getExecutor() {
+	return executor;
+    }
+
+    /**
+     * Shuts down the executor if this facade created it. Evaluations that have
+     * been started still complete, but new ones are rejected, and their futures
+     * complete with a {@code RejectedExecutionException}. An executor that was
+     * passed to the constructor is left running.
+     */
+    @Override
+    public void close() {
+	if (owned != null) {
+	    owned.shutdown();
+	}
+    }
+
+    /**
+     * Gets the number of distinct evaluations that have been started and are not
+     * finished yet.
+     * 
+     * @return The number of evaluations
+     */
+    public int getInFlight() {
+	return inFlight.size();
+    }
+
+    /**
+     * Computes a function of one argument.
+     * 
+     * @param function
+     *            The function
+     * @param x
+     *            The argument
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see MathFunction#apply(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> apply(MathFunction function, BigDecimal x, ComputeContext cc) {
+	return submit(function.name(), cc, c -> function.apply(x, c), x);
+    }
+
+    /**
+     * Computes &pi;.
+     * 
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#pi(ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> pi(ComputeContext cc) {
+	return submit("PI", cc, BigDecimalMath::pi);
+    }
+
+    /**
+     * Computes e.
+     * 
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#e(ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> e(ComputeContext cc) {
+	return submit("E", cc, BigDecimalMath::e);
+    }
+
+    /**
+     * Computes sin(theta).
+     * 
+     * @param theta
+     *            The angle
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#sin(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> sin(BigDecimal theta, ComputeContext cc) {
+	return apply(MathFunction.SIN, theta, cc);
+    }
+
+    /**
+     * Computes cos(theta).
+     * 
+     * @param theta
+     *            The angle
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#cos(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> cos(BigDecimal theta, ComputeContext cc) {
+	return apply(MathFunction.COS, theta, cc);
+    }
+
+    /**
+     * Computes tan(theta).
+     * 
+     * @param theta
+     *            The angle
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#tan(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> tan(BigDecimal theta, ComputeContext cc) {
+	return apply(MathFunction.TAN, theta, cc);
+    }
+
+    /**
+     * Computes arcsin(a).
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#arcsin(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> arcsin(BigDecimal a, ComputeContext cc) {
+	return apply(MathFunction.ARCSIN, a, cc);
+    }
+
+    /**
+     * Computes arccos(a).
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#arccos(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> arccos(BigDecimal a, ComputeContext cc) {
+	return apply(MathFunction.ARCCOS, a, cc);
+    }
+
+    /**
+     * Computes arctan(a).
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#arctan(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> arctan(BigDecimal a, ComputeContext cc) {
+	return apply(MathFunction.ARCTAN, a, cc);
+    }
+
+    /**
+     * Computes sinh(x).
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#sinh(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> sinh(BigDecimal x, ComputeContext cc) {
+	return apply(MathFunction.SINH, x, cc);
+    }
+
+    /**
+     * Computes cosh(x).
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#cosh(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> cosh(BigDecimal x, ComputeContext cc) {
+	return apply(MathFunction.COSH, x, cc);
+    }
+
+    /**
+     * Computes tanh(x).
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#tanh(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> tanh(BigDecimal x, ComputeContext cc) {
+	return apply(MathFunction.TANH, x, cc);
+    }
+
+    /**
+     * Computes e^a.
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#exp(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> exp(BigDecimal a, ComputeContext cc) {
+	return apply(MathFunction.EXP, a, cc);
+    }
+
+    /**
+     * Computes ln(a).
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#ln(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> ln(BigDecimal a, ComputeContext cc) {
+	return apply(MathFunction.LN, a, cc);
+    }
+
+    /**
+     * Computes log10(a).
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#log10(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> log10(BigDecimal a, ComputeContext cc) {
+	return apply(MathFunction.LOG10, a, cc);
+    }
+
+    /**
+     * Computes log2(a).
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#log2(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> log2(BigDecimal a, ComputeContext cc) {
+	return apply(MathFunction.LOG2, a, cc);
+    }
+
+    /**
+     * Computes the logarithm of a to the given base.
+     * 
+     * @param a
+     *            The number
+     * @param base
+     *            The base
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#log(BigDecimal, BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> log(BigDecimal a, BigDecimal base, ComputeContext cc) {
+	return submit("LOG", cc, c -> BigDecimalMath.log(a, base, c), a, base);
+    }
+
+    /**
+     * Computes a^n.
+     * 
+     * @param a
+     *            The base
+     * @param n
+     *            The exponent
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#pow(BigDecimal, BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> pow(BigDecimal a, BigDecimal n, ComputeContext cc) {
+	return submit("POW", cc, c -> BigDecimalMath.pow(a, n, c), a, n);
+    }
+
+    /**
+     * Computes sqrt(a).
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#sqrt(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> sqrt(BigDecimal a, ComputeContext cc) {
+	return apply(MathFunction.SQRT, a, cc);
+    }
+
+    /**
+     * Computes the nth root of a.
+     * 
+     * @param a
+     *            The number
+     * @param n
+     *            The degree of the root
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#root(BigDecimal, int, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> root(BigDecimal a, int n, ComputeContext cc) {
+	return submit("ROOT", cc, c -> BigDecimalMath.root(a, n, c), a, BigDecimal.valueOf(n));
+    }
+
+    /**
+     * Computes n!.
+     * 
+     * @param n
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#factorial(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> factorial(BigDecimal n, ComputeContext cc) {
+	return submit("FACTORIAL", cc, c -> BigDecimalMath.factorial(n, c), n);
+    }
+
+    /**
+     * Computes &Gamma;(x).
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#gamma(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> gamma(BigDecimal x, ComputeContext cc) {
+	return apply(MathFunction.GAMMA, x, cc);
+    }
+
+    /**
+     * Computes ln(|&Gamma;(x)|).
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#lnGamma(BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> lnGamma(BigDecimal x, ComputeContext cc) {
+	return apply(MathFunction.LN_GAMMA, x, cc);
+    }
+
+    /**
+     * Computes the beta function B(a, b).
+     * 
+     * @param a
+     *            The first argument
+     * @param b
+     *            The second argument
+     * @param cc
+     *            The context to use in calculation
+     * @return The future result
+     * @see BigDecimalMath#beta(BigDecimal, BigDecimal, ComputeContext)
+     */
+    public CompletableFuture<BigDecimal> beta(BigDecimal a, BigDecimal b, ComputeContext cc) {
+	return submit("BETA", cc, c -> BigDecimalMath.beta(a, b, c), a, b);
+    }
+
+    /**
+     * Starts a computation, or joins the identical one that is in progress. A
+     * computation that every caller has given up on cannot be joined, and is
+     * replaced by a new one.
+     */
+    private CompletableFuture<BigDecimal> submit(String function, ComputeContext cc,
+	    Function<ComputeContext, BigDecimal> computation, BigDecimal... arguments) {
+	CancellationException stopped = stopped(cc);
+	if (stopped != null) {
+	    CompletableFuture<BigDecimal> future = new CompletableFuture<BigDecimal>();
+	    future.completeExceptionally(stopped);
+	    return future;
+	}
+	Key key = new Key(function, arguments, cc);
+	while (true) {
+	    Computation shared = inFlight.get(key);
+	    boolean created = false;
+	    if (shared == null) {
+		Computation fresh = new Computation();
+		shared = inFlight.putIfAbsent(key, fresh);
+		if (shared == null) {
+		    shared = fresh;
+		    created = true;
+		}
+	    }
+	    CompletableFuture<BigDecimal> future = shared.join(cc);
+	    if (future == null) {
+		inFlight.remove(key, shared);
+		continue;
+	    }
+	    if (created) {
+		start(key, shared, cc, computation);
+	    }
+	    return future;
+	}
+    }
+
+    /**
+     * Runs a computation with a copy of the context of its first caller that
+     * has no deadline or progress listener, and whose token is cancelled once
+     * every caller has given up.
+     */
+    private void start(Key key, Computation shared, ComputeContext cc,
+	    Function<ComputeContext, BigDecimal> computation) {
+	ComputeContext work = cc.withPrecision(cc.getResultPrecision());
+	work.clearDeadline();
+	work.setCancellationToken(shared);
+	work.setProgressListener(null);
+	try {
+	    executor.execute(() -> {
+		BigDecimal result;
+		if (shared.isCancelled()) {
+		    inFlight.remove(key, shared);
+		    shared.result.completeExceptionally(new CancellationException(CANCELLED));
+		    return;
+		}
+		try {
+		    result = computation.apply(work);
+		} catch (Throwable e) {
+		    inFlight.remove(key, shared);
+		    shared.result.completeExceptionally(e);
+		    return;
+		}
+		inFlight.remove(key, shared);
+		shared.result.complete(result);
+	    });
+	} catch (RejectedExecutionException e) {
+	    inFlight.remove(key, shared);
+	    shared.result.completeExceptionally(e);
+	}
+    }
+
+    private static ScheduledExecutorService createTimer() {
+	ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+	    Thread thread = new Thread(runnable, "BigDecimalMath-async-timer");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+	timer.setRemoveOnCancelPolicy(true);
+	return timer;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for every task. Virtual
+     * threads are looked up by reflection, so that this class still runs on
+     * JVMs without them, where a cached pool of daemon threads is used instead.
+     */
+    private static ExecutorService defaultExecutor() {
+	try {
+	    return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+	} catch (ReflectiveOperationException e) {
+	    return Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "BigDecimalMath-async");
+		thread.setDaemon(true);
+		return thread;
+	    });
+	}
+    }
+
+    /**
+     * Checks whether a caller has given up before its request is made.
+     * 
+     * @return The exception its future fails with, or null if it still waits
+     */
+    private static CancellationException stopped(ComputeContext cc) {
+	CancellationToken token = cc.getCancellationToken();
+	if (token != null && token.isCancelled()) {
+	    return new CancellationException(CANCELLED);
+	}
+	if (cc.hasDeadline() && System.nanoTime() - cc.getDeadline() > 0) {
+	    return new CancellationException(DEADLINE_PASSED);
+	}
+	return null;
+    }
+
+    /**
+     * Completes the future of a caller with a {@code CancellationException} when
+     * the deadline of its context passes or its token is cancelled, whether or
+     * not the computation it waits for has started.
+     */
+    private static void watch(CompletableFuture<BigDecimal> future, ComputeContext cc) {
+	CancellationToken token = cc.getCancellationToken();
+	if (cc.hasDeadline()) {
+	    long delay = Math.max(0, cc.getDeadline() - System.nanoTime());
+	    ScheduledFuture<?> timeout = TIMER.schedule(
+		    () -> future.completeExceptionally(new CancellationException(DEADLINE_PASSED)), delay,
+		    TimeUnit.NANOSECONDS);
+	    future.whenComplete((value, e) -> timeout.cancel(false));
+	}
+	if (token != null) {
+	    ScheduledFuture<?> poll = TIMER.scheduleWithFixedDelay(() -> {
+		if (token.isCancelled()) {
+		    future.completeExceptionally(new CancellationException(CANCELLED));
+		}
+	    }, TOKEN_POLL_MILLIS, TOKEN_POLL_MILLIS, TimeUnit.MILLISECONDS);
+	    future.whenComplete((value, e) -> poll.cancel(false));
+	}
+    }
+
+    /**
+     * A computation in progress and the number of callers waiting for it. It
+     * serves as the cancellation token of the computation, which is cancelled
+     * once none of the callers is waiting any longer.
+     */
+    private static final class Computation extends CancellationToken {
+
+	private final CompletableFuture<BigDecimal> result = new CompletableFuture<BigDecimal>();
+	private int waiting;
+	private volatile boolean abandoned;
+
+	/**
+	 * Adds a caller and gets its future, or null if every caller has given up
+	 * already.
+	 */
+	synchronized CompletableFuture<BigDecimal> join(ComputeContext cc) {
+	    if (abandoned) {
+		return null;
+	    }
+	    CompletableFuture<BigDecimal> future = new CompletableFuture<BigDecimal>();
+	    waiting++;
+	    future.whenComplete((value, e) -> leave());
+	    result.whenComplete((value, e) -> {
+		if (e == null) {
+		    future.complete(value);
+		} else {
+		    future.completeExceptionally(e);
+		}
+	    });
+	    watch(future, cc);
+	    return future;
+	}
+
+	/**
+	 * Removes a caller whose future has completed, and abandons the
+	 * computation if it was the last one and the result is not known yet.
+	 */
+	private synchronized void leave() {
+	    waiting--;
+	    if (waiting == 0 && !result.isDone()) {
+		abandoned = true;
+	    }
+	}
+
+	@Override
+	public boolean isCancelled() {
+	    return abandoned || super.isCancelled();
+	}
+
+    }
+
+    /**
+     * Identifies a computation by its function, its arguments and the settings of
+     * the context that change the result. Arguments are compared with their
+     * scale, since some functions reject 30.0 but accept 30.
+     */
+    private static final class Key {
+
+	private final String function;
+	private final BigDecimal[] arguments;
+	private final int precision;
+	private final int roundingMode;
+	private final int iterations;
+	private final boolean adaptive;
+	private final boolean chebyshev;
+
+	Key(String function, BigDecimal[] arguments, ComputeContext cc) {
+	    this.function = function;
+	    this.arguments = arguments.clone();
+	    this.precision = cc.getResultPrecision();
+	    this.roundingMode = cc.getRoundingMode();
+	    this.iterations = cc.getIterations();
+	    this.adaptive = cc.isAdaptive();
+	    this.chebyshev = cc.isChebyshev();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+	    if (!(o instanceof Key)) {
+		return false;
+	    }
+	    Key other = (Key) o;
+	    return function.equals(other.function) && Arrays.equals(arguments, other.arguments)
+		    && precision == other.precision && roundingMode == other.roundingMode
+		    && iterations == other.iterations && adaptive == other.adaptive && chebyshev == other.chebyshev;
+	}
+
+	@Override
+	public int hashCode() {
+	    int hash = function.hashCode() * 31 + Arrays.hashCode(arguments);
+	    hash = hash * 31 + precision;
+	    hash = hash * 31 + roundingMode;
+	    hash = hash * 31 + iterations;
+	    hash = hash * 31 + (adaptive ? 1 : 0);
+	    return hash * 31 + (chebyshev ? 1 : 0);
+	}
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+
+/**
+ * A number known only to lie within a radius of a midpoint. This is the result
+ * of {@link MathFunction#ball(BigDecimal, mathutils.math.context.ComputeContext)}
+ * and states how many digits of a computed value can be trusted.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public final class BigDecimalBall {
+
+    private final BigDecimal midpoint;
+    private final BigDecimal radius;
+
+    /**
+     * Creates a ball.
+     * 
+     * @param midpoint
+     *            The midpoint
+     * @param radius
+     *            The radius
+     * @throws IllegalArgumentException
+     *             if the radius is negative
+     */
+    public BigDecimalBall(BigDecimal midpoint, BigDecimal radius) {
+	if (radius.signum() < 0) {
+	    throw new IllegalArgumentException("The radius must not be negative");
+	}
+	this.midpoint = midpoint;
+	this.radius = radius;
+    }
+
+    public BigDecimal getMidpoint() {
+	return midpoint;
+    }
+
+    public BigDecimal getRadius() {
+	return radius;
+    }
+
+    /**
+     * Gets the smallest number in the ball.
+     * 
+     * @return midpoint-radius
+     */
+    public BigDecimal getLower() {
+	return midpoint.subtract(radius);
+    }
+
+    /**
+     * Gets the largest number in the ball.
+     * 
+     * @return midpoint+radius
+     */
+    public BigDecimal getUpper() {
+	return midpoint.add(radius);
+    }
+
+    /**
+     * Checks whether a number lies within the ball.
+     * 
+     * @param x
+     *            The number
+     * @return true if |x-midpoint| <= radius
+     */
+    public boolean contains(BigDecimal x) {
+	return x.subtract(midpoint).abs().compareTo(radius) <= 0;
+    }
+
+    /**
+     * Gets the number of significant digits of the midpoint that are correct,
+     * which is how many digits the radius lies below the leading digit of the
+     * midpoint.
+     * 
+     * @return The number of correct digits, or the precision of the midpoint if
+     *         the radius is zero
+     */
+    public int getCorrectDigits() {
+	if (radius.signum() == 0) {
+	    return midpoint.precision();
+	}
+	double digits = BigDecimalMath.approximateLog10(midpoint) - BigDecimalMath.approximateLog10(radius);
+	return digits > 0 ? (int) Math.floor(digits) : 0;
+    }
+
+    @Override
+    public String toString() {
+	return midpoint + " +/- " + radius;
+    }
+
+}
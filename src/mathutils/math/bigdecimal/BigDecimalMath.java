@@ -1,7 +1,12 @@
 package mathutils.math.bigdecimal;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinTask;
 
 import mathutils.math.context.ComputeContext;
 
@@ -9,12 +14,20 @@ import mathutils.math.context.ComputeContext;
  * This class adds functionality to the {@code BigDecimal} class. Specifically
  * it includes the triginometric functions (sine, cosine, tangent, arcsine,
  * arccosine, arctangent), as well as some other useful functions (factorial,
- * double factorial, clamping). <br />
+ * double factorial, binomial coefficients, clamping). <br />
  * <br />
  * All of the trigonometric functions use a Taylor Series to calculate. Input
- * values to periodic functions are clamped to prevent precision loss with large
- * values. The {@code ComputeContext} class provides a way to finely control the
- * computation of these functions.
+ * values to periodic functions are reduced modulo &pi;/2 to prevent precision
+ * loss with large values. The {@code ComputeContext} class provides a way to finely control the
+ * computation of these functions. Each function chooses its own working
+ * precision and rounds the result to {@link ComputeContext#getResultPrecision()}
+ * digits, and {@link MathFunction} can give the result with a bound on its
+ * error. Results of up to 30 digits are computed with doubles or
+ * double-doubles when they can be proven to be correctly rounded. Long
+ * computations stop with a {@code CancellationException} once the deadline of
+ * their context passes or its {@link mathutils.math.context.CancellationToken}
+ * is cancelled, and calls are measured if the context has
+ * {@link mathutils.math.context.ComputeMetrics}.
  * 
  * @author Hanavan Kuhn
  *
@@ -27,54 +40,247 @@ public class BigDecimalMath {
      */
     public static final ComputeContext DEFAULT_CONTEXT = new ComputeContext();
     /**
-     * The constant &pi; with several hundred digits of accuracy. It is calculated
-     * using this library using the function &pi;=6*arcsin(1/2).
+     * The constant &pi; to 100 digits. Use {@link #pi(ComputeContext)} for more
+     * digits.
      */
-    public static final BigDecimal PI;
+    public static final BigDecimal PI = new BigDecimal(
+	    "3.141592653589793238462643383279502884197169399375105820974944592307816406286208998628034825342117068");
     /**
-     * The constant e calculated with the function e=exp(1).
+     * The constant e to 100 digits. Use {@link #e(ComputeContext)} for more
+     * digits.
      */
-    public static final BigDecimal E;
+    public static final BigDecimal E = new BigDecimal(
+	    "2.718281828459045235360287471352662497757247093699959574966967627724076630353547594571382178525166427");
 
-    static {
-	System.out.println("Computing pi...");
-	PI = arcsin(new BigDecimal(0.5), DEFAULT_CONTEXT).multiply(new BigDecimal(6));
-	System.out.println("Computing e...");
-	E = exp(BigDecimal.ONE, DEFAULT_CONTEXT);
-	System.out.println("Done.");
-    }
+    private static final BigDecimal THREE = BigDecimal.valueOf(3);
+    private static final BigDecimal FOUR = BigDecimal.valueOf(4);
+    private static final double LOG10_2 = Math.log10(2);
+    private static final double LOG10_3 = Math.log10(3);
+    private static final BigDecimal MAX_EXP = BigDecimal.valueOf(Integer.MAX_VALUE);
+
+    private static final ConstantCache PI_CACHE = new ConstantCache("pi", Chudnovsky::pi);
+    private static final ConstantCache E_CACHE = new ConstantCache("e", BigDecimalMath::computeE);
+    private static final ConstantCache LN2_CACHE = new ConstantCache("ln2", BigDecimalMath::computeLn2);
+    private static final ConstantCache LN10_CACHE = new ConstantCache("ln10", BigDecimalMath::computeLn10);
+    private static final ConstantCache SQRT2_CACHE = new ConstantCache("sqrt2",
+	    (mc, cc) -> sqrt(BigDecimal.valueOf(2), mc));
+    private static final ConstantCache[] E_POWERS = createPowersOfE();
+
+    private static final Series SIN_SERIES = new Series(j -> 1, j -> 2L * j * (2 * j + 1));
+    private static final Series EXP_SERIES = new Series(j -> 1, j -> j);
+    private static final Series ARCTAN_SERIES = new Series(j -> 2 * j, j -> 2 * j + 1);
+    private static final Series ARCTANH_SERIES = new Series(j -> 2 * j - 1, j -> 2 * j + 1);
+
+    /**
+     * The cost of one half angle step of arctan, which needs a square root and a
+     * division, relative to one triple angle step of sin.
+     */
+    private static final double HALF_ANGLE_COST = 4;
+
+    /**
+     * Binary splitting ranges of at least this many terms are split between
+     * threads.
+     */
+    private static final int PARALLEL_TERMS = 2048;
+
+    /**
+     * Integers and half integers up to this size always have their gamma
+     * function computed exactly from factorials.
+     */
+    private static final int EXACT_GAMMA_LIMIT = 1000;
+
+    /**
+     * Logarithms of numbers with at least this many digits use the
+     * arithmetic-geometric mean instead of Newton's method.
+     */
+    private static final int AGM_THRESHOLD = 15000;
 
-    @Deprecated
     /**
-     * Function NYI. This function is designed to calculate &pi; to any desired
-     * precision using a digit-extraction method. Currently it is not functional so
-     * be patient.
+     * Computes &pi; to the precision defined by the {@code ComputeContext}. The
+     * Chudnovsky series is summed using binary splitting, so the time taken grows
+     * only slightly faster than the number of digits requested. The result is
+     * cached, so later requests for the same or fewer digits are only rounded.
      * 
      * @param cc
      *            The context to use in the computation of this function
      * @return &pi; to the desired accuracy
      */
     public static BigDecimal pi(ComputeContext cc) {
-	BigDecimal result = BigDecimal.ZERO;
-	MathContext mc = cc.getAsMathContext();
-	for (int i = 0; i < 1000; i++) {
-	    // result = result
-	    // .add(new BigDecimal(-1).pow(i).multiply(factorial(new
-	    // BigDecimal(6).multiply(new BigDecimal(i))))
-	    // .multiply(new BigDecimal(13591409).add(new BigDecimal(545140134).multiply(new
-	    // BigDecimal(i)))));
+	return PI_CACHE.get(cc.getAsMathContext(), cc);
+    }
+
+    /**
+     * Computes the constant e to the precision defined by the
+     * {@code ComputeContext}. The result is cached, so later requests for the same
+     * or fewer digits are only rounded.
+     * 
+     * @param cc
+     *            The context to use in the computation of this function
+     * @return e to the desired accuracy
+     */
+    public static BigDecimal e(ComputeContext cc) {
+	return E_CACHE.get(cc.getAsMathContext(), cc);
+    }
+
+    /**
+     * Computes the natural logarithm of 2 to the precision defined by the
+     * {@code ComputeContext}. The result is cached, so later requests for the same
+     * or fewer digits are only rounded.
+     * 
+     * @param cc
+     *            The context to use in the computation of this function
+     * @return ln(2) to the desired accuracy
+     */
+    public static BigDecimal ln2(ComputeContext cc) {
+	return LN2_CACHE.get(cc.getAsMathContext(), cc);
+    }
+
+    /**
+     * Computes the square root of 2 to the precision defined by the
+     * {@code ComputeContext}. The result is cached, so later requests for the same
+     * or fewer digits are only rounded.
+     * 
+     * @param cc
+     *            The context to use in the computation of this function
+     * @return sqrt(2) to the desired accuracy
+     */
+    public static BigDecimal sqrt2(ComputeContext cc) {
+	return SQRT2_CACHE.get(cc.getAsMathContext(), cc);
+    }
+
+    /**
+     * Sets the store that backs the cached constants &pi;, e, ln(2), ln(10) and
+     * sqrt(2). A constant is read from the store before it is computed, and the
+     * store is extended whenever more digits of a constant are computed, so a
+     * process that starts with a filled store does not compute them at all.
+     * Constants are not stored unless this is called.
+     * 
+     * @param store
+     *            The store, or null to keep constants in memory only
+     */
+    public static void setConstantStore(ConstantStore store) {
+	ConstantCache.setStore(store);
+    }
+
+    /**
+     * Creates an unbounded generator of the decimal digits of &pi;, starting with
+     * the 3 before the decimal point. Unlike {@link #pi(ComputeContext)} the
+     * number of digits need not be known in advance, and the generator can be
+     * saved and resumed with {@link DigitSpigot#checkpoint()} and
+     * {@link DigitSpigot#resume(DigitSpigot.Checkpoint)}. Use
+     * {@link DigitSpigot#stream()} to get the digits as an {@code IntStream}.
+     * 
+     * @return The digit generator
+     */
+    public static DigitSpigot piDigits() {
+	return DigitSpigot.pi();
+    }
+
+    /**
+     * Creates an unbounded generator of the decimal digits of e, starting with
+     * the 2 before the decimal point.
+     * 
+     * @return The digit generator
+     * @see #piDigits()
+     */
+    public static DigitSpigot eDigits() {
+	return DigitSpigot.e();
+    }
 
-	    BigDecimal term0 = new BigDecimal(Math.pow(2, 5)).divide(new BigDecimal(4 * i + 1), mc).negate();
-	    BigDecimal term1 = new BigDecimal(Math.pow(2, 0)).divide(new BigDecimal(4 * i + 3), mc).negate();
-	    BigDecimal term2 = new BigDecimal(Math.pow(2, 8)).divide(new BigDecimal(10 * i + 1), mc);
-	    BigDecimal term3 = new BigDecimal(Math.pow(2, 6)).divide(new BigDecimal(10 * i + 3), mc).negate();
-	    BigDecimal term4 = new BigDecimal(Math.pow(2, 2)).divide(new BigDecimal(10 * i + 5), mc).negate();
-	    BigDecimal term5 = new BigDecimal(Math.pow(2, 2)).divide(new BigDecimal(10 * i + 7), mc).negate();
-	    BigDecimal term6 = new BigDecimal(Math.pow(2, 0)).divide(new BigDecimal(10 * i + 9), mc);
-	    result = result.add(new BigDecimal(-1).pow(i).divide(new BigDecimal(2).pow(10 * i))
-		    .multiply(term0.add(term1).add(term2).add(term3).add(term4).add(term5).add(term6)));
+    /**
+     * Creates the table of caches for e^1, e^2, e^4, ... e^(2^30). Each power is
+     * computed by squaring the one before it.
+     */
+    private static ConstantCache[] createPowersOfE() {
+	ConstantCache[] powers = new ConstantCache[31];
+	powers[0] = E_CACHE;
+	for (int i = 1; i < powers.length; i++) {
+	    ConstantCache root = powers[i - 1];
+	    powers[i] = new ConstantCache((mc, cc) -> {
+		BigDecimal value = root.get(mc, cc);
+		return value.multiply(value, mc);
+	    });
 	}
-	return new BigDecimal(1d / 256).multiply(result);
+	return powers;
+    }
+
+    /**
+     * Sums the series e=1/0!+1/1!+1/2!+... using binary splitting.
+     */
+    private static BigDecimal computeE(MathContext mc, ComputeContext cc) {
+	int terms = 1;
+	for (double digits = 0; digits < mc.getPrecision() + 2; terms++) {
+	    digits += Math.log10(terms);
+	}
+	int last = terms;
+	int threads = cc.getThreads();
+	BigInteger[] qt = Parallel.invoke(threads, () -> splitE(1, last, threads > 1, cc));
+	cc.checkCancelled();
+	return new BigDecimal(qt[0].add(qt[1])).divide(new BigDecimal(qt[0]), mc);
+    }
+
+    /**
+     * Sums the terms 1/a, 1/(a(a+1)), ... 1/(a(a+1)...(b-1)). The returned array
+     * holds Q(a, b)=a(a+1)...(b-1) and T(a, b), where the sum is T/Q. If
+     * parallel is true, large ranges fork their left half.
+     */
+    private static BigInteger[] splitE(int a, int b, boolean parallel, ComputeContext cc) {
+	if (b - a == 1) {
+	    return new BigInteger[] { BigInteger.valueOf(a), BigInteger.ONE };
+	}
+	cc.checkCancelled();
+	int m = (a + b) >>> 1;
+	if (parallel && b - a >= PARALLEL_TERMS) {
+	    ForkJoinTask<BigInteger[]> leftTask = Parallel.fork(() -> splitE(a, m, true, cc));
+	    BigInteger[] right = splitE(m, b, true, cc);
+	    BigInteger[] left = leftTask.join();
+	    ForkJoinTask<BigInteger> q = Parallel.fork(() -> left[0].multiply(right[0]));
+	    BigInteger t = left[1].multiply(right[0]).add(right[1]);
+	    return new BigInteger[] { q.join(), t };
+	}
+	BigInteger[] left = splitE(a, m, false, cc);
+	BigInteger[] right = splitE(m, b, false, cc);
+	return new BigInteger[] { left[0].multiply(right[0]), left[1].multiply(right[0]).add(right[1]) };
+    }
+
+    /**
+     * Computes ln(2)=18*atanh(1/26)-2*atanh(1/4801)+8*atanh(1/8749).
+     */
+    private static BigDecimal computeLn2(MathContext mc, ComputeContext cc) {
+	int digits = mc.getPrecision() + 5;
+	BigInteger one = BigInteger.TEN.pow(digits);
+	int[] arguments = { 26, 4801, 8749 };
+	BigInteger[] parts = new BigInteger[arguments.length];
+	Parallel.forEach(arguments.length, cc.getThreads(), i -> parts[i] = atanhInverse(arguments[i], one, cc));
+	BigInteger sum = parts[0].multiply(BigInteger.valueOf(18)).subtract(parts[1].multiply(BigInteger.valueOf(2)))
+		.add(parts[2].multiply(BigInteger.valueOf(8)));
+	return new BigDecimal(sum, digits).round(mc);
+    }
+
+    /**
+     * Computes ln(10)=3*ln(2)+ln(5/4)=3*ln(2)+2*atanh(1/9).
+     */
+    private static BigDecimal computeLn10(MathContext mc, ComputeContext cc) {
+	int digits = mc.getPrecision() + 5;
+	BigInteger one = BigInteger.TEN.pow(digits);
+	BigDecimal ln2 = LN2_CACHE.get(new MathContext(digits), cc);
+	BigDecimal ln125 = new BigDecimal(atanhInverse(9, one, cc).shiftLeft(1), digits);
+	return ln2.multiply(BigDecimal.valueOf(3)).add(ln125).round(mc);
+    }
+
+    /**
+     * Computes atanh(1/n) as a fixed point number scaled by one.
+     */
+    private static BigInteger atanhInverse(int n, BigInteger one, ComputeContext cc) {
+	BigInteger nSquared = BigInteger.valueOf((long) n * n);
+	BigInteger power = one.divide(BigInteger.valueOf(n));
+	BigInteger sum = power;
+	for (long k = 3; power.signum() != 0; k += 2) {
+	    cc.checkCancelled();
+	    power = power.divide(nSquared);
+	    sum = sum.add(power.divide(BigInteger.valueOf(k)));
+	}
+	return sum;
     }
 
     /**
@@ -90,155 +296,984 @@ public class BigDecimalMath {
     }
 
     /**
-     * Computes the sine of the number theta in radians. Uses the specified
-     * {@code MathContext} object to define how the number is calculated.
+     * Computes the sine of the number theta in radians. Uses the specified
+     * {@code MathContext} object to define how the number is calculated.
+     * 
+     * @param theta
+     *            The angle
+     * @param cc
+     *            The context to use in calculation
+     * @return sin(theta)
+     */
+    public static BigDecimal sin(BigDecimal theta, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("sin", measured -> sin(theta, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("sin", cached -> sin(theta, cached), theta);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.SIN, theta, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	return sinCos(theta, null, cc, true, false)[0];
+    }
+
+    /**
+     * Computes the cosine of the number theta in radians. Uses the default
+     * {@code ComputeContext} for calculation.
+     * 
+     * @param theta
+     *            The angle
+     * @return cos(theta)
+     */
+    public static BigDecimal cos(BigDecimal theta) {
+	return cos(theta, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Computes the cosine of the number theta in radians. Uses the specified
+     * {@code MathContext} object to define how the number is calculated.
+     * 
+     * @param theta
+     *            The angle
+     * @param cc
+     *            The context to use in calculation
+     * @return cos(theta)
+     */
+    public static BigDecimal cos(BigDecimal theta, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("cos", measured -> cos(theta, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("cos", cached -> cos(theta, cached), theta);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.COS, theta, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	return sinCos(theta, null, cc, false, true)[1];
+    }
+
+    /**
+     * Computes the tangent of the number theta in radians. Uses the default
+     * {@code ComputeContext} for calculation.
+     * 
+     * @param theta
+     *            The angle
+     * @return tan(theta)
+     */
+    public static BigDecimal tan(BigDecimal theta) {
+	return tan(theta, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Computes the tangent of the number theta in radians. Uses the specified
+     * {@code MathContext} object to define how the number is calculated.
+     * 
+     * @param theta
+     *            The angle
+     * @param cc
+     *            The context to use in calculation
+     * @return tan(theta)
+     */
+    public static BigDecimal tan(BigDecimal theta, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("tan", measured -> tan(theta, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("tan", cached -> tan(theta, cached), theta);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.TAN, theta, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	ComputeContext work = cc.withPrecision(cc.getResultPrecision() + 5);
+	BigDecimal[] sinCos = sinCos(theta, null, work, true, true);
+	cc.setTermsUsed(work.getTermsUsed());
+	return sinCos[0].divide(sinCos[1], cc.getAsMathContext());
+    }
+
+    /**
+     * Computes the sine and cosine of the number theta in radians together. Both
+     * come from a single argument reduction and a single series, so this costs
+     * about as much as {@link #sin(BigDecimal, ComputeContext)} alone.
+     * 
+     * @param theta
+     *            The angle
+     * @param cc
+     *            The context to use in calculation
+     * @return An array holding sin(theta) and cos(theta)
+     */
+    public static BigDecimal[] sincos(BigDecimal theta, ComputeContext cc) {
+	return sinCos(theta, null, cc, true, true);
+    }
+
+    /**
+     * Computes the hyperbolic sine of the number x, which is (e^x-e^-x)/2. Uses
+     * the specified {@code ComputeContext} object to define how the number is
+     * calculated.
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return sinh(x)
+     * @throws ArithmeticException
+     *             if |x| is too large for the result to be represented
+     */
+    public static BigDecimal sinh(BigDecimal x, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("sinh", measured -> sinh(x, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("sinh", cached -> sinh(x, cached), x);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.SINH, x, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	MathContext mc = cc.getAsMathContext();
+	if (isNegligibleSquare(x, mc)) {
+	    cc.setTermsUsed(0);
+	    return x.round(mc);
+	}
+	BigDecimal[] pair = expPair(x, cc);
+	return pair[0].subtract(pair[1]).multiply(new BigDecimal("0.5"), mc);
+    }
+
+    /**
+     * Computes the hyperbolic cosine of the number x, which is (e^x+e^-x)/2. Uses
+     * the specified {@code ComputeContext} object to define how the number is
+     * calculated.
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return cosh(x)
+     * @throws ArithmeticException
+     *             if |x| is too large for the result to be represented
+     */
+    public static BigDecimal cosh(BigDecimal x, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("cosh", measured -> cosh(x, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("cosh", cached -> cosh(x, cached), x);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.COSH, x, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	MathContext mc = cc.getAsMathContext();
+	if (isNegligibleSquare(x, mc)) {
+	    cc.setTermsUsed(0);
+	    return BigDecimal.ONE;
+	}
+	BigDecimal[] pair = expPair(x, cc);
+	return pair[0].add(pair[1]).multiply(new BigDecimal("0.5"), mc);
+    }
+
+    /**
+     * Computes the hyperbolic tangent of the number x, which is
+     * (e^x-e^-x)/(e^x+e^-x). Uses the specified {@code ComputeContext} object to
+     * define how the number is calculated. Once 1-|tanh(x)|, which is about
+     * 2e^(-2|x|), is below the last digit, the result is &plusmn;1.
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return tanh(x)
+     */
+    public static BigDecimal tanh(BigDecimal x, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("tanh", measured -> tanh(x, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("tanh", cached -> tanh(x, cached), x);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.TANH, x, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	MathContext mc = cc.getAsMathContext();
+	if (isNegligibleSquare(x, mc)) {
+	    cc.setTermsUsed(0);
+	    return x.round(mc);
+	}
+	if (approximateLog10(x) > Math.log10((mc.getPrecision() + 1) * Math.log(10))) {
+	    cc.setTermsUsed(0);
+	    return BigDecimal.valueOf(x.signum());
+	}
+	BigDecimal[] pair = expPair(x, cc);
+	return pair[0].subtract(pair[1]).divide(pair[0].add(pair[1]), mc);
+    }
+
+    /**
+     * Computes e^x and e^-x from a single exponential. When |x| is small,
+     * e^x-e^-x loses about -log10(|x|) digits to cancellation, so that many extra
+     * digits are used.
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return An array holding e^x and e^-x
+     */
+    private static BigDecimal[] expPair(BigDecimal x, ComputeContext cc) {
+	int extra = (int) Math.max(0, Math.ceil(-approximateLog10(x)));
+	ComputeContext work = cc.withPrecision(cc.getResultPrecision() + extra + 5);
+	BigDecimal exp = exp(x, work);
+	cc.setTermsUsed(work.getTermsUsed());
+	return new BigDecimal[] { exp, BigDecimal.ONE.divide(exp, work.getAsMathContext()) };
+    }
+
+    /**
+     * Checks whether x^2 is too small to change x*(1+x^2) at the precision of the
+     * given {@code MathContext}.
+     */
+    private static boolean isNegligibleSquare(BigDecimal x, MathContext mc) {
+	return 2 * approximateLog10(x) < -mc.getPrecision() - 5;
+    }
+
+    /**
+     * Computes the sine and cosine of theta. The angle is first reduced modulo
+     * &pi;/2 to the range [-&pi;/4, &pi;/4], using enough digits of &pi; that
+     * large angles keep their significant digits. The reduced angle is then
+     * divided by 3^k so that the series converges quickly, and the sine is
+     * recovered with the identity sin(3x)=3sin(x)-4sin^3(x). The cosine of the
+     * reduced angle is sqrt(1-sin^2), which is well conditioned because the
+     * reduced angle is at most &pi;/4. If the context selects Chebyshev tables,
+     * both are evaluated from their tables at the reduced angle instead.
+     * 
+     * @param theta
+     *            The angle
+     * @param halfPi
+     *            &pi;/2 to a precision that is enough to reduce theta, or null
+     *            if it should be taken from the cache
+     * @param cc
+     *            The context to use in calculation
+     * @param needSin
+     *            Whether the sine should be computed
+     * @param needCos
+     *            Whether the cosine should be computed
+     * @return An array holding sin(theta) and cos(theta), where a value that was
+     *         not needed may be null
+     */
+    private static BigDecimal[] sinCos(BigDecimal theta, BigDecimal halfPi, ComputeContext cc, boolean needSin,
+	    boolean needCos) {
+	MathContext mc = cc.getAsMathContext();
+	int digits = mc.getPrecision() + 10;
+	BigDecimal[] reduced = reduceHalfPi(theta, halfPi, digits, cc);
+	int quadrant = reduced[0].toBigInteger().mod(BigInteger.valueOf(4)).intValue();
+	BigDecimal r = reduced[1];
+	boolean cosNeeded = needCos && quadrant % 2 == 0 || needSin && quadrant % 2 == 1;
+
+	BigDecimal sin;
+	BigDecimal cos = null;
+	if (ChebyshevTable.isUsable(cc)) {
+	    ChebyshevTable sinTable = ChebyshevTable.get(MathFunction.SIN, digits, cc);
+	    sin = sinTable.evaluate(r);
+	    if (cosNeeded) {
+		cos = ChebyshevTable.get(MathFunction.COS, digits, cc).evaluate(r);
+	    }
+	    cc.setTermsUsed(sinTable.getTerms());
+	} else {
+	    int k = reductionSteps(r, LOG10_3, 1, digits, cc);
+	    ComputeContext work = cc.withPrecision(digits + (int) Math.log10(k + 1));
+	    MathContext workMc = work.getAsMathContext();
+	    BigDecimal x = r.divide(THREE.pow(k), workMc);
+	    sin = x.multiply(SIN_SERIES.sum(x.multiply(x).negate(), work), workMc);
+	    for (int i = 0; i < k; i++) {
+		cc.checkCancelled();
+		sin = sin.multiply(THREE.subtract(FOUR.multiply(sin.multiply(sin, workMc))), workMc);
+	    }
+	    cc.setTermsUsed(work.getTermsUsed());
+	    if (cosNeeded) {
+		cos = sqrt(BigDecimal.ONE.subtract(sin.multiply(sin, workMc)), workMc);
+	    }
+	}
+	BigDecimal[] result = new BigDecimal[2];
+	switch (quadrant) {
+	case 0:
+	    result[0] = sin;
+	    result[1] = cos;
+	    break;
+	case 1:
+	    result[0] = cos;
+	    result[1] = needCos ? sin.negate() : null;
+	    break;
+	case 2:
+	    result[0] = needSin ? sin.negate() : null;
+	    result[1] = cos == null ? null : cos.negate();
+	    break;
+	default:
+	    result[0] = cos == null ? null : cos.negate();
+	    result[1] = sin;
+	    break;
+	}
+	for (int i = 0; i < 2; i++) {
+	    if (result[i] != null) {
+		result[i] = result[i].round(mc);
+	    }
+	}
+	return result;
+    }
+
+    /**
+     * Reduces theta to the range [-&pi;/4, &pi;/4] by subtracting a multiple q of
+     * &pi;/2. &pi; is computed with enough extra digits to cover the magnitude of
+     * theta, and more are added if theta is so close to a multiple of &pi;/2 that
+     * digits are lost to cancellation.
+     * 
+     * @param theta
+     *            The angle
+     * @param sharedHalfPi
+     *            &pi;/2 to use if it has enough digits, or null
+     * @param digits
+     *            The number of significant digits the reduced angle needs
+     * @param cc
+     *            The context to use in calculation
+     * @return An array holding q and the reduced angle
+     */
+    private static BigDecimal[] reduceHalfPi(BigDecimal theta, BigDecimal sharedHalfPi, int digits,
+	    ComputeContext cc) {
+	int magnitude = (int) Math.max(0, Math.ceil(approximateLog10(theta)));
+	int extra = 0;
+	while (true) {
+	    int precision = digits + magnitude + extra;
+	    BigDecimal halfPi = sharedHalfPi != null && sharedHalfPi.precision() >= precision ? sharedHalfPi
+		    : pi(cc.withPrecision(precision)).multiply(new BigDecimal("0.5"));
+	    BigDecimal q = theta.divide(halfPi, new MathContext(magnitude + 3)).setScale(0, RoundingMode.HALF_EVEN);
+	    if (q.signum() == 0) {
+		return new BigDecimal[] { q, theta };
+	    }
+	    BigDecimal r = theta.subtract(q.multiply(halfPi));
+	    if (r.signum() == 0) {
+		// theta is never an exact multiple of pi/2, so halfPi needs more digits
+		extra = Math.max(2 * extra, precision);
+		continue;
+	    }
+	    int lost = (int) Math.ceil(-approximateLog10(r));
+	    if (lost <= extra) {
+		return new BigDecimal[] { q, r.round(new MathContext(digits)) };
+	    }
+	    extra = lost + 5;
+	}
+    }
+
+    /**
+     * Computes the sine of every angle in an array. This is faster than calling
+     * {@link #sin(BigDecimal, ComputeContext)} for each angle, because &pi; and
+     * the series coefficients are computed once for the whole array, and the
+     * array is split between {@link ComputeContext#getThreads()} threads.
+     * 
+     * @param theta
+     *            The angles
+     * @param result
+     *            The array that receives sin(theta[i]) at index i, which may be
+     *            the same array as theta
+     * @param cc
+     *            The context to use in calculation
+     * @throws IllegalArgumentException
+     *             if result is shorter than theta
+     */
+    public static void sin(BigDecimal[] theta, BigDecimal[] result, ComputeContext cc) {
+	BigDecimal halfPi = batchHalfPi(theta, result, cc);
+	Parallel.forEach(theta.length, cc.getThreads(), i -> result[i] = sinCos(theta[i], halfPi, cc, true, false)[0]);
+    }
+
+    /**
+     * Computes the cosine of every angle in an array. This is faster than calling
+     * {@link #cos(BigDecimal, ComputeContext)} for each angle, because &pi; and
+     * the series coefficients are computed once for the whole array, and the
+     * array is split between {@link ComputeContext#getThreads()} threads.
+     * 
+     * @param theta
+     *            The angles
+     * @param result
+     *            The array that receives cos(theta[i]) at index i, which may be
+     *            the same array as theta
+     * @param cc
+     *            The context to use in calculation
+     * @throws IllegalArgumentException
+     *             if result is shorter than theta
+     */
+    public static void cos(BigDecimal[] theta, BigDecimal[] result, ComputeContext cc) {
+	BigDecimal halfPi = batchHalfPi(theta, result, cc);
+	Parallel.forEach(theta.length, cc.getThreads(), i -> result[i] = sinCos(theta[i], halfPi, cc, false, true)[1]);
+    }
+
+    /**
+     * Computes &pi;/2 with enough digits to reduce every angle in a batch, so the
+     * reduction of each angle does not have to round its own copy of &pi;.
+     */
+    private static BigDecimal batchHalfPi(BigDecimal[] theta, BigDecimal[] result, ComputeContext cc) {
+	checkBatch(theta, result);
+	double magnitude = 0;
+	for (BigDecimal angle : theta) {
+	    magnitude = Math.max(magnitude, approximateLog10(angle));
+	}
+	int precision = cc.getResultPrecision() + 10 + (int) Math.ceil(magnitude) + 5;
+	return pi(cc.withPrecision(precision)).multiply(new BigDecimal("0.5"));
+    }
+
+    /**
+     * Checks that the result array of a batch is long enough for the arguments.
+     */
+    private static void checkBatch(BigDecimal[] arguments, BigDecimal[] result) {
+	if (result.length < arguments.length) {
+	    throw new IllegalArgumentException("The result array has length " + result.length + " but there are "
+		    + arguments.length + " arguments");
+	}
+    }
+
+    /**
+     * Computes the arcsine of the number a, and the result is in radians. The
+     * arcsine is computed as arctan(a/sqrt((1-a)(1+a))), where the factors are
+     * kept separate so that no digits are lost when a is close to &plusmn;1.
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return arcsin(a)
+     * @throws ArithmeticException
+     *             if |a| > 1
+     */
+    public static BigDecimal arcsin(BigDecimal a, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("arcsin", measured -> arcsin(a, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("arcsin", cached -> arcsin(a, cached), a);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.ARCSIN, a, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	int compare = a.abs().compareTo(BigDecimal.ONE);
+	if (compare > 0) {
+	    throw new ArithmeticException("arcsin() is not defined at " + a.doubleValue());
+	}
+	MathContext mc = cc.getAsMathContext();
+	if (compare == 0) {
+	    cc.setTermsUsed(0);
+	    BigDecimal halfPi = pi(cc).multiply(new BigDecimal("0.5"), mc);
+	    return a.signum() < 0 ? halfPi.negate() : halfPi;
+	}
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + 5);
+	MathContext workMc = work.getAsMathContext();
+	BigDecimal cos = sqrt(BigDecimal.ONE.subtract(a).multiply(BigDecimal.ONE.add(a), workMc), workMc);
+	BigDecimal result = arctan(a.divide(cos, workMc), work).round(mc);
+	cc.setTermsUsed(work.getTermsUsed());
+	return result;
+    }
+
+    /**
+     * Computes the arccosine of the number a, and the result is in radians. The
+     * arccosine is computed as 2*arctan(sqrt((1-a)/(1+a))), which keeps its
+     * precision over the whole range [-1, 1].
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return arccos(a)
+     * @throws ArithmeticException
+     *             if |a| > 1
+     */
+    public static BigDecimal arccos(BigDecimal a, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("arccos", measured -> arccos(a, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("arccos", cached -> arccos(a, cached), a);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.ARCCOS, a, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	if (a.abs().compareTo(BigDecimal.ONE) > 0) {
+	    throw new ArithmeticException("arccos() is not defined at " + a.doubleValue());
+	}
+	MathContext mc = cc.getAsMathContext();
+	if (a.compareTo(BigDecimal.ONE.negate()) == 0) {
+	    cc.setTermsUsed(0);
+	    return pi(cc);
+	}
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + 5);
+	MathContext workMc = work.getAsMathContext();
+	BigDecimal tan = sqrt(BigDecimal.ONE.subtract(a).divide(BigDecimal.ONE.add(a), workMc), workMc);
+	BigDecimal result = arctan(tan, work).multiply(BigDecimal.valueOf(2), mc);
+	cc.setTermsUsed(work.getTermsUsed());
+	return result;
+    }
+
+    /**
+     * Computes the arctangent of the number a, and the result is in radians. If
+     * |a| > 1, the identity arctan(a)=&plusmn;&pi;/2-arctan(1/a) is used first.
+     * The argument is then halved k times with arctan(x)=2*arctan(x/(1+sqrt(1+x^2)))
+     * so that the series converges quickly. Euler's series<br />
+     * <br />
+     * arctan(x) = x/(1+x^2) * (1 + (2/3)y + (2*4)/(3*5)y^2 + ...), y=x^2/(1+x^2)<br />
+     * <br />
+     * is used instead of the Maclaurin series because all of its terms are
+     * positive, so no digits are lost to cancellation.
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return arctan(a)
+     */
+    public static BigDecimal arctan(BigDecimal a, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("arctan", measured -> arctan(a, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("arctan", cached -> arctan(a, cached), a);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.ARCTAN, a, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	MathContext mc = cc.getAsMathContext();
+	if (a.signum() == 0) {
+	    cc.setTermsUsed(0);
+	    return BigDecimal.ZERO;
+	}
+	int digits = mc.getPrecision() + 10;
+	MathContext digitsMc = new MathContext(digits, mc.getRoundingMode());
+	boolean reciprocal = a.abs().compareTo(BigDecimal.ONE) > 0;
+	BigDecimal x = reciprocal ? BigDecimal.ONE.divide(a, digitsMc) : a;
+
+	int k = reductionSteps(x, LOG10_2, HALF_ANGLE_COST, digits, cc);
+	ComputeContext work = cc.withPrecision(digits + (int) Math.ceil(k * LOG10_2));
+	MathContext workMc = work.getAsMathContext();
+	for (int i = 0; i < k; i++) {
+	    cc.checkCancelled();
+	    x = x.divide(BigDecimal.ONE.add(sqrt(BigDecimal.ONE.add(x.multiply(x, workMc)), workMc)), workMc);
+	}
+	BigDecimal denominator = BigDecimal.ONE.add(x.multiply(x, workMc));
+	BigDecimal y = x.multiply(x, workMc).divide(denominator, workMc);
+	BigDecimal result = x.divide(denominator, workMc).multiply(ARCTAN_SERIES.sum(y, work), workMc)
+		.multiply(BigDecimal.valueOf(2).pow(k));
+	cc.setTermsUsed(work.getTermsUsed());
+	if (reciprocal) {
+	    BigDecimal halfPi = pi(work).multiply(new BigDecimal("0.5"));
+	    result = (a.signum() > 0 ? halfPi : halfPi.negate()).subtract(result);
+	}
+	return result.round(mc);
+    }
+
+    /**
+     * Computes a to the power n. Uses the default {@code ComputeContext} for
+     * calculation.
+     * 
+     * @param a
+     *            The number used as the base
+     * @param n
+     *            The number used as the exponent
+     * @return a^n
+     * @throws ArithmeticException
+     *             if the result is infinite or not a real number
+     * @see #pow(BigDecimal, BigDecimal, ComputeContext)
+     */
+    public static BigDecimal pow(BigDecimal a, BigDecimal n) {
+	return pow(a, n, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Computes a to the power n. Integer exponents are computed by repeated
+     * squaring, which needs about log2(n) multiplications. Other exponents are
+     * computed as exp(n*ln(a)), where ln(a) is computed with enough extra digits
+     * to cover the size of n*ln(a). Special cases follow the same rules as
+     * {@link Math#pow(double, double)}: a^0=1 for every a, including 0^0, and
+     * 0^n=0 for n > 0.
+     * 
+     * @param a
+     *            The number used as the base
+     * @param n
+     *            The number used as the exponent
+     * @param cc
+     *            The context to use in calculation
+     * @return a^n
+     * @throws ArithmeticException
+     *             if a is zero and n is negative, or if a is negative and n is not
+     *             an integer
+     */
+    public static BigDecimal pow(BigDecimal a, BigDecimal n, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("pow", measured -> pow(a, n, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("pow", cached -> pow(a, n, cached), a, n);
+	}
+	MathContext mc = cc.getAsMathContext();
+	if (n.signum() == 0) {
+	    return BigDecimal.ONE;
+	}
+	if (a.signum() == 0) {
+	    if (n.signum() < 0) {
+		throw new ArithmeticException("0^" + n + " is infinite");
+	    }
+	    return BigDecimal.ZERO;
+	}
+	boolean integer = isInteger(n);
+	if (a.signum() < 0 && !integer) {
+	    throw new ArithmeticException(a + "^" + n + " is not a real number");
+	}
+	if (integer && n.abs().compareTo(MAX_EXP) <= 0) {
+	    return pow(a, n.intValueExact(), cc);
+	}
+	boolean negate = a.signum() < 0 && n.toBigInteger().testBit(0);
+	double lnA = Math.abs(approximateLog10(a) * Math.log(10));
+	int extra = (int) Math.max(0, Math.ceil(approximateLog10(n) + Math.log10(lnA)));
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + extra + 10);
+	BigDecimal result = exp(n.multiply(ln(a.abs(), work)), work);
+	return (negate ? result.negate() : result).round(mc);
+    }
+
+    /**
+     * Computes a to an integer power n by repeated squaring.
+     * 
+     * @param a
+     *            The number used as the base
+     * @param n
+     *            The exponent
+     * @param cc
+     *            The context to use in calculation
+     * @return a^n
+     */
+    private static BigDecimal pow(BigDecimal a, int n, ComputeContext cc) {
+	MathContext mc = cc.getAsMathContext();
+	MathContext workMc = new MathContext(mc.getPrecision() + (int) Math.ceil(Math.log10(Math.abs((double) n))) + 3,
+		mc.getRoundingMode());
+	BigDecimal result = BigDecimal.ONE;
+	BigDecimal power = a;
+	for (long bits = Math.abs((long) n); bits != 0; bits >>>= 1) {
+	    cc.checkCancelled();
+	    if ((bits & 1) != 0) {
+		result = result.multiply(power, workMc);
+	    }
+	    if (bits > 1) {
+		power = power.multiply(power, workMc);
+	    }
+	}
+	return n < 0 ? BigDecimal.ONE.divide(result, mc) : result.round(mc);
+    }
+
+    /**
+     * Computes the square root of a. Uses the default {@code ComputeContext} for
+     * calculation.
+     * 
+     * @param a
+     *            The number
+     * @return sqrt(a)
+     * @throws ArithmeticException
+     *             if a < 0
+     */
+    public static BigDecimal sqrt(BigDecimal a) {
+	return sqrt(a, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Computes the square root of a. Newton's method is used on the reciprocal
+     * square root starting from a double estimate, and the working precision is
+     * doubled with each step, so the cost is only a few full precision
+     * multiplications.
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return sqrt(a)
+     * @throws ArithmeticException
+     *             if a < 0
+     */
+    public static BigDecimal sqrt(BigDecimal a, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("sqrt", measured -> sqrt(a, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("sqrt", cached -> sqrt(a, cached), a);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.SQRT, a, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	if (a.signum() < 0) {
+	    throw new ArithmeticException("Square root is not defined for numbers < 0");
+	}
+	cc.setTermsUsed(0);
+	return sqrt(a, cc.getAsMathContext(), cc);
+    }
+
+    /**
+     * Computes the nth root of a, which is the number whose nth power is a. Odd
+     * roots of negative numbers are negative, and a negative n gives the
+     * reciprocal of the root. The root is computed in the same way as
+     * {@link #sqrt(BigDecimal, ComputeContext)}.
+     * 
+     * @param a
+     *            The number
+     * @param n
+     *            The degree of the root
+     * @param cc
+     *            The context to use in calculation
+     * @return a^(1/n)
+     * @throws ArithmeticException
+     *             if n is 0, if a < 0 and n is even, or if a is 0 and n is negative
+     */
+    public static BigDecimal root(BigDecimal a, int n, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("root", measured -> root(a, n, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("root", cached -> root(a, n, cached), a, BigDecimal.valueOf(n));
+	}
+	if (n == 0) {
+	    throw new ArithmeticException("The 0th root is not defined");
+	}
+	if (a.signum() < 0 && n % 2 == 0) {
+	    throw new ArithmeticException("Even roots are not defined for numbers < 0");
+	}
+	MathContext mc = cc.getAsMathContext();
+	cc.setTermsUsed(0);
+	if (a.signum() == 0) {
+	    if (n < 0) {
+		throw new ArithmeticException("0^(1/" + n + ") is infinite");
+	    }
+	    return BigDecimal.ZERO;
+	}
+	int degree = Math.abs(n);
+	MathContext workMc = new MathContext(mc.getPrecision() + (int) Math.ceil(Math.log10(degree)) + 5,
+		mc.getRoundingMode());
+	BigDecimal inverse = inverseRoot(a.abs(), degree, workMc, cc);
+	BigDecimal result = n < 0 ? inverse : a.abs().multiply(inverse.pow(degree - 1, workMc), workMc);
+	return (a.signum() < 0 ? result.negate() : result).round(mc);
+    }
+
+    /**
+     * Computes the natural logarithm of a. Numbers close to 1 use the series
+     * ln(a)=2*atanh((a-1)/(a+1)), which converges quickly there. Otherwise
+     * Newton's method on exp is used for medium precisions, and the
+     * arithmetic-geometric mean is used for high precisions.
+     * 
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return ln(a)
+     * @throws ArithmeticException
+     *             if a <= 0
+     */
+    public static BigDecimal ln(BigDecimal a, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("ln", measured -> ln(a, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("ln", cached -> ln(a, cached), a);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.LN, a, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	if (a.signum() <= 0) {
+	    throw new ArithmeticException("ln() is not defined at " + a.doubleValue());
+	}
+	if (a.compareTo(BigDecimal.ONE) == 0) {
+	    cc.setTermsUsed(0);
+	    return BigDecimal.ZERO;
+	}
+	if (approximateLog10(a.subtract(BigDecimal.ONE)) < -2) {
+	    return lnNearOne(a, cc);
+	}
+	if (cc.getResultPrecision() < AGM_THRESHOLD) {
+	    return lnNewton(a, cc);
+	}
+	return lnAgm(a, cc);
+    }
+
+    /**
+     * Computes the base 10 logarithm of a. Exact powers of 10 give an exact
+     * result.
      * 
-     * @param theta
-     *            The angle
+     * @param a
+     *            The number
      * @param cc
      *            The context to use in calculation
-     * @return sin(theta)
+     * @return log10(a)
+     * @throws ArithmeticException
+     *             if a <= 0
      */
-    public static BigDecimal sin(BigDecimal theta, ComputeContext cc) {
-	BigDecimal result = BigDecimal.ZERO;
-	MathContext mc = cc.getAsMathContext();
-	theta = clamp(theta, PI.negate(), PI);
-	for (int i = 0; i < cc.getIterations(); i++) {
-	    result = result.add((i % 2 == 0 ? BigDecimal.ONE : BigDecimal.ONE.negate()).multiply(theta.pow(2 * i + 1))
-		    .divide(factorial(new BigDecimal(2 * i + 1)), mc));
+    public static BigDecimal log10(BigDecimal a, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("log10", measured -> log10(a, measured));
 	}
-	return result;
+	if (a.signum() > 0 && a.stripTrailingZeros().unscaledValue().equals(BigInteger.ONE)) {
+	    return BigDecimal.valueOf(-a.stripTrailingZeros().scale());
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("log10", cached -> log10(a, cached), a);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.LOG10, a, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	return log(a, LN10_CACHE, cc);
     }
 
     /**
-     * Computes the cosine of the number theta in radians. Uses the default
-     * {@code ComputeContext} for calculation.
+     * Computes the base 2 logarithm of a.
      * 
-     * @param theta
-     *            The angle
-     * @return cos(theta)
+     * @param a
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return log2(a)
+     * @throws ArithmeticException
+     *             if a <= 0
      */
-    public static BigDecimal cos(BigDecimal theta) {
-	return cos(theta, DEFAULT_CONTEXT);
+    public static BigDecimal log2(BigDecimal a, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("log2", measured -> log2(a, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("log2", cached -> log2(a, cached), a);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.LOG2, a, cc);
+	if (fast != null) {
+	    return fast;
+	}
+	return log(a, LN2_CACHE, cc);
     }
 
     /**
-     * Computes the cosine of the number theta in radians. Uses the specified
-     * {@code MathContext} object to define how the number is calculated.
+     * Computes the logarithm of a in the given base.
      * 
-     * @param theta
-     *            The angle
+     * @param a
+     *            The number
+     * @param base
+     *            The base of the logarithm
      * @param cc
      *            The context to use in calculation
-     * @return cos(theta)
+     * @return log(a)/log(base)
+     * @throws ArithmeticException
+     *             if a <= 0, if base <= 0, or if base is 1
      */
-    public static BigDecimal cos(BigDecimal theta, ComputeContext cc) {
-	BigDecimal result = BigDecimal.ZERO;
-	MathContext mc = cc.getAsMathContext();
-	theta = clamp(theta, PI.negate(), PI);
-	for (int i = 0; i < cc.getIterations(); i++) {
-	    result = result.add(
-		    new BigDecimal(-1).pow(i).multiply(theta.pow(2 * i)).divide(factorial(new BigDecimal(2 * i)), mc));
+    public static BigDecimal log(BigDecimal a, BigDecimal base, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("log", measured -> log(a, base, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("log", cached -> log(a, base, cached), a, base);
 	}
+	if (base.signum() <= 0 || base.compareTo(BigDecimal.ONE) == 0) {
+	    throw new ArithmeticException("log() is not defined in base " + base.doubleValue());
+	}
+	MathContext mc = cc.getAsMathContext();
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + 5);
+	BigDecimal lnBase = ln(base, work);
+	BigDecimal result = ln(a, work).divide(lnBase, mc);
+	cc.setTermsUsed(work.getTermsUsed());
 	return result;
     }
 
     /**
-     * Computes the tangent of the number theta in radians. Uses the default
-     * {@code ComputeContext} for calculation.
-     * 
-     * @param theta
-     *            The angle
-     * @return tan(theta)
+     * Divides ln(a) by a cached logarithm.
      */
-    public static BigDecimal tan(BigDecimal theta) {
-	return tan(theta, DEFAULT_CONTEXT);
+    private static BigDecimal log(BigDecimal a, ConstantCache lnBase, ComputeContext cc) {
+	MathContext mc = cc.getAsMathContext();
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + 5);
+	BigDecimal result = ln(a, work).divide(lnBase.get(work.getAsMathContext(), cc), mc);
+	cc.setTermsUsed(work.getTermsUsed());
+	return result;
     }
 
     /**
-     * Computes the tangent of the number theta in radians. Uses the specified
-     * {@code MathContext} object to define how the number is calculated.
-     * 
-     * @param theta
-     *            The angle
-     * @param cc
-     *            The context to use in calculation
-     * @return tan(theta)
+     * Computes ln(a)=2*atanh(z) with z=(a-1)/(a+1), which is small when a is
+     * close to 1.
      */
-    public static BigDecimal tan(BigDecimal theta, ComputeContext cc) {
+    private static BigDecimal lnNearOne(BigDecimal a, ComputeContext cc) {
 	MathContext mc = cc.getAsMathContext();
-	return sin(theta, cc).divide(cos(theta, cc), mc);
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + 5);
+	MathContext workMc = work.getAsMathContext();
+	BigDecimal z = a.subtract(BigDecimal.ONE).divide(a.add(BigDecimal.ONE), workMc);
+	BigDecimal result = z.multiply(ARCTANH_SERIES.sum(z.multiply(z), work)).multiply(BigDecimal.valueOf(2), mc);
+	cc.setTermsUsed(work.getTermsUsed());
+	return result;
     }
 
     /**
-     * Computes the arcsine of the number a, and the result is in radians. Uses the
-     * specified {@code MathContext} object to define how the number is calculated.
+     * Computes the natural logarithm of a using the arithmetic-geometric mean.
+     * With s=a*2^m larger than 2^(p/2), where p is the precision in bits,
+     * ln(a)=&pi;/(2*AGM(1, 4/s))-m*ln(2). The AGM converges quadratically, so
+     * only about log2(p) square roots are needed.
      * 
      * @param a
-     *            The number
+     *            The number, which must be positive
      * @param cc
      *            The context to use in calculation
-     * @return arcsin(a)
+     * @return ln(a)
      */
-    public static BigDecimal arcsin(BigDecimal a, ComputeContext cc) {
-	if (a.abs().compareTo(BigDecimal.ONE) > 0) {
-	    throw new ArithmeticException("arcsin() is not defined at " + a.doubleValue());
-	}
-	BigDecimal result = BigDecimal.ZERO;
+    private static BigDecimal lnAgm(BigDecimal a, ComputeContext cc) {
 	MathContext mc = cc.getAsMathContext();
-	for (int i = 0; i < cc.getIterations(); i++) {
-	    result = result.add(doubleFactorial(new BigDecimal(2 * i - 1), false)
-		    .divide(doubleFactorial(new BigDecimal(2 * i + 1), true), mc).multiply(a.pow(2 * i + 1)));
-	    // result = result.add(
-	    // a.pow(2 * i + 1).multiply(new BigDecimal(0.5)/* ??? */).divide(factorial(new
-	    // BigDecimal(i)).add(
-	    // new BigDecimal(2).multiply(new BigDecimal(i).multiply(factorial(new
-	    // BigDecimal(i))))), mc));
+	int digits = mc.getPrecision() + (int) Math.ceil(Math.log10(mc.getPrecision())) + 12;
+	double bits = digits / LOG10_2;
+	MathContext workMc = new MathContext(digits, mc.getRoundingMode());
+	int m = (int) Math.ceil(bits / 2 + 2 - approximateLog10(a) / LOG10_2);
+	cc.recordWork(digits, 0);
+	BigDecimal two = BigDecimal.valueOf(2);
+	BigDecimal s = m >= 0 ? a.multiply(two.pow(m)) : a.divide(two.pow(-m));
+
+	BigDecimal x = BigDecimal.ONE;
+	BigDecimal y = BigDecimal.valueOf(4).divide(s, workMc);
+	BigDecimal tolerance = BigDecimal.ONE.movePointLeft(digits);
+	while (x.subtract(y).abs().compareTo(tolerance) > 0) {
+	    cc.reportProgress("agm", (long) Math.max(0, -approximateLog10(x.subtract(y))), digits);
+	    BigDecimal mean = x.add(y).divide(two, workMc);
+	    y = sqrt(x.multiply(y, workMc), workMc);
+	    x = mean;
 	}
-	return result;
+	BigDecimal pi = PI_CACHE.get(workMc, cc);
+	BigDecimal ln2 = LN2_CACHE.get(workMc, cc);
+	cc.setTermsUsed(0);
+	return pi.divide(x.multiply(two), workMc).subtract(ln2.multiply(BigDecimal.valueOf(m))).round(mc);
     }
 
     /**
-     * Computes the arctangent of the number a, and the result is in radians. Uses
-     * the specified {@code MathContext} object to define how the number is
-     * calculated.
+     * Computes the natural logarithm of a using Newton's method on exp. The
+     * estimate starts with double precision and the working precision is doubled
+     * with each step, so the last step, which is done at full precision, costs
+     * about as much as all the others together. This is the fastest method for
+     * low and medium precisions.
      * 
      * @param a
-     *            The number
+     *            The number, which must be positive
      * @param cc
      *            The context to use in calculation
-     * @return arctan(a)
+     * @return ln(a)
      */
-    public static BigDecimal arctan(BigDecimal a, ComputeContext cc) {
-	BigDecimal result = BigDecimal.ZERO;
+    private static BigDecimal lnNewton(BigDecimal a, ComputeContext cc) {
 	MathContext mc = cc.getAsMathContext();
-	for (int i = 0; i < cc.getIterations(); i++) {
-	    result = result
-		    .add(new BigDecimal(-1).pow(i).multiply(a.pow(2 * i + 1)).divide(new BigDecimal(2 * i + 1), mc));
-	}
-	return result;
-    }
-
-    /**
-     * NYI. Computes a to the power n.
-     * 
-     * @param a
-     *            The number used as the base
-     * @param n
-     *            The number used as the exponent
-     * @return a^n
-     * @throws ArithmeticException
-     *             if a and n are both zero, or 0^0
-     */
-    public static BigDecimal pow(BigDecimal a, BigDecimal n) {
-	if (a.compareTo(BigDecimal.ZERO) == 0 && n.compareTo(BigDecimal.ZERO) == 0) {
-	    throw new ArithmeticException("0^0 is undefined");
-	}
-	BigDecimal result = a;
-	for (BigDecimal i = new BigDecimal(1); i.compareTo(n) <= 0; i = i.add(BigDecimal.ONE)) {
-	    result = result.multiply(result);
+	int extra = (int) Math.max(0, Math.ceil(-approximateLog10(a.subtract(BigDecimal.ONE))));
+	int target = mc.getPrecision() + extra + 5;
+	cc.recordWork(target, 0);
+	BigDecimal y = new BigDecimal(approximateLog10(a) * Math.log(10));
+	for (int precision = 30;; precision = Math.min(2 * precision, target)) {
+	    cc.reportProgress("newton", precision, target);
+	    ComputeContext work = cc.withPrecision(precision + 5);
+	    MathContext workMc = work.getAsMathContext();
+	    y = y.add(a.divide(exp(y, work), workMc)).subtract(BigDecimal.ONE);
+	    if (precision == target) {
+		break;
+	    }
 	}
-	return result;
+	return y.round(mc);
     }
 
     /**
@@ -259,54 +1294,179 @@ public class BigDecimalMath {
     }
 
     /**
-     * Raises e to the power of the number.
+     * Raises e to the power of the number. The number is split into an integer n
+     * and a fraction f with |f| <= 1/2. e^n is the product of cached powers e^(2^i)
+     * for the bits of n. f is divided by 2^k so that the series converges
+     * quickly, and the result of the series is squared k times. Enough guard
+     * digits are used to cover the error the squaring and products add. If the
+     * context selects Chebyshev tables, e^f is evaluated from its table instead.
      * 
      * @param a
      *            The number
      * @param cc
      *            The context to use in calculation
      * @return e^a
+     * @throws ArithmeticException
+     *             if |a| is too large for the result to be represented
      */
     public static BigDecimal exp(BigDecimal a, ComputeContext cc) {
-	BigDecimal result = BigDecimal.ZERO;
+	if (cc.getMetrics() != null) {
+	    return cc.measure("exp", measured -> exp(a, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("exp", cached -> exp(a, cached), a);
+	}
+	BigDecimal fast = FastPath.evaluate(MathFunction.EXP, a, cc);
+	if (fast != null) {
+	    return fast;
+	}
 	MathContext mc = cc.getAsMathContext();
-	for (int i = 0; i < cc.getIterations(); i++) {
-	    result = result.add(a.pow(i).divide(factorial(new BigDecimal(i)), mc));
+	if (a.signum() == 0) {
+	    cc.setTermsUsed(0);
+	    return BigDecimal.ONE;
 	}
-	return result;
+	BigDecimal integer = a.setScale(0, RoundingMode.HALF_EVEN);
+	if (integer.abs().compareTo(MAX_EXP) > 0) {
+	    throw new ArithmeticException("exp() is too large to represent at " + a.doubleValue());
+	}
+	int n = integer.intValueExact();
+	BigDecimal fraction = a.subtract(integer);
+	int digits = mc.getPrecision() + 10;
+	BigDecimal result;
+	MathContext workMc;
+	if (ChebyshevTable.isUsable(cc)) {
+	    ChebyshevTable table = ChebyshevTable.get(MathFunction.EXP, digits, cc);
+	    workMc = cc.withPrecision(digits).getAsMathContext();
+	    result = table.evaluate(fraction);
+	    cc.setTermsUsed(table.getTerms());
+	} else {
+	    int k = reductionSteps(fraction, LOG10_2, 1, digits, cc);
+	    ComputeContext work = cc.withPrecision(digits + (int) Math.ceil(k * LOG10_2));
+	    workMc = work.getAsMathContext();
+	    result = EXP_SERIES.sum(fraction.divide(BigDecimal.valueOf(2).pow(k), workMc), work);
+	    for (int i = 0; i < k; i++) {
+		cc.checkCancelled();
+		result = result.multiply(result, workMc);
+	    }
+	    cc.setTermsUsed(work.getTermsUsed());
+	}
+	if (n != 0) {
+	    BigDecimal power = BigDecimal.ONE;
+	    int bits = Math.abs(n);
+	    for (int i = 0; bits != 0; i++, bits >>>= 1) {
+		if ((bits & 1) != 0) {
+		    power = power.multiply(E_POWERS[i].get(workMc, cc), workMc);
+		}
+	    }
+	    result = n > 0 ? result.multiply(power, workMc) : result.divide(power, workMc);
+	}
+	return result.round(mc);
+    }
+
+    /**
+     * Raises e to the power of every number in an array. This is faster than
+     * calling {@link #exp(BigDecimal, ComputeContext)} for each number, because
+     * the cached powers of e and the series coefficients are shared by the whole
+     * array, and the array is split between {@link ComputeContext#getThreads()}
+     * threads.
+     * 
+     * @param a
+     *            The numbers
+     * @param result
+     *            The array that receives e^a[i] at index i, which may be the same
+     *            array as a
+     * @param cc
+     *            The context to use in calculation
+     * @throws IllegalArgumentException
+     *             if result is shorter than a
+     * @throws ArithmeticException
+     *             if any |a[i]| is too large for the result to be represented
+     */
+    public static void exp(BigDecimal[] a, BigDecimal[] result, ComputeContext cc) {
+	checkBatch(a, result);
+	Parallel.forEach(a.length, cc.getThreads(), i -> result[i] = exp(a[i], cc));
+    }
+
+    /**
+     * Chooses how many times an argument should be divided by a constant factor
+     * before a series is evaluated. The more times it is divided, the fewer terms
+     * the series needs, but each division has to be undone afterwards with a full
+     * precision identity. The target size balances the two, and is made smaller
+     * when needed so the series fits in the number of iterations.
+     * 
+     * @param x
+     *            The argument of the series
+     * @param log10Factor
+     *            log10 of the factor the argument is divided by
+     * @param cost
+     *            The cost of one reduction step relative to a few full precision
+     *            multiplications, where larger costs give fewer steps
+     * @param digits
+     *            The working precision
+     * @param cc
+     *            The context to use in calculation
+     * @return The number of divisions
+     */
+    private static int reductionSteps(BigDecimal x, double log10Factor, double cost, int digits,
+	    ComputeContext cc) {
+	int iterations = Math.max(Series.MIN_TERMS, cc.getIterations());
+	double target = -Math.max(Math.sqrt(digits) / (8 * cost), 2.0 * digits / iterations);
+	double log10 = approximateLog10(x);
+	int steps = log10 > target ? (int) Math.ceil((log10 - target) / log10Factor) : 0;
+	cc.recordWork(digits, steps);
+	return steps;
     }
 
     /**
      * Multiplies all numbers between 1 and n together. Only works for integer
      * values. NOTE: 0! = 1, and 1! = 1. This function also is not defined for
      * negative numbers. To evaluate the factorial function with any real number,
-     * use the gamma function.
+     * use {@link #gamma(BigDecimal, ComputeContext)}. Large factorials are
+     * computed with the prime swing algorithm, and recent results are cached.
      * 
      * @param n
      *            The number to factorial
      * @return n!
      * @throws ArithmeticException
-     *             if n is not an integer, or if n < 0
+     *             if n is not an integer, if n < 0, or if n is too large
      */
     public static BigDecimal factorial(BigDecimal n) {
+	return factorial(n, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Multiplies all numbers between 1 and n together, splitting the large
+     * products between {@link ComputeContext#getThreads()} threads. The result is
+     * exact, so only the number of threads is read from the context.
+     * 
+     * @param n
+     *            The number to factorial
+     * @param cc
+     *            The context to use in calculation
+     * @return n!
+     * @throws ArithmeticException
+     *             if n is not an integer, if n < 0, or if n is too large
+     * @see #factorial(BigDecimal)
+     */
+    public static BigDecimal factorial(BigDecimal n, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("factorial", measured -> factorial(n, measured));
+	}
 	if (n.scale() != 0) {
 	    throw new ArithmeticException("Factorial function does not accept decimals");
 	}
 	if (n.compareTo(BigDecimal.ZERO) < 0) {
 	    throw new ArithmeticException("Factorial function is not defined for numbers < 0");
 	}
-	BigDecimal result = BigDecimal.ONE;
-	for (BigDecimal i = new BigDecimal(2); i.compareTo(n) <= 0; i = i.add(BigDecimal.ONE)) {
-	    result = result.multiply(i);
-	}
-	return result;
+	return new BigDecimal(Factorials.factorial(toInt(n), cc));
     }
 
     /**
      * If n is even, multiplies all even numbers between 2 and n together. If n is
      * odd, multiplies all odd numbers between 1 and n together. If special is true,
      * it will multiply all the even numbers between 2 and n together, and if n is
-     * odd, it will multiply by n as well. Some examples of results are shown below.
+     * odd, it will multiply by n as well. The result is 1 for n <= 0 unless special
+     * is true and n is odd. Some examples of results are shown below.
      * <br />
      * <br />
      * <table border width=150>
@@ -342,29 +1502,323 @@ public class BigDecimalMath {
      * @param special
      *            Whether or not to force the use of even numbers
      * @return n!!
+     * @throws ArithmeticException
+     *             if n is not an integer, or if n is too large
      */
     public static BigDecimal doubleFactorial(BigDecimal n, boolean special) {
-	BigDecimal result = BigDecimal.ONE;
-	if (special) {
-	    for (BigDecimal i = new BigDecimal(2); i.compareTo(n) <= 0; i = i.add(new BigDecimal(2))) {
-		result = result.multiply(i);
-	    }
-	    result = result.multiply(n);
-	} else if (n.remainder(new BigDecimal(2)).equals(BigDecimal.ZERO)) {
-	    for (BigDecimal i = new BigDecimal(2); i.compareTo(n) <= 0; i = i.add(new BigDecimal(2))) {
-		result = result.multiply(i);
-	    }
-	} else {
-	    for (BigDecimal i = new BigDecimal(3); i.compareTo(n) <= 0; i = i.add(new BigDecimal(2))) {
-		result = result.multiply(i);
-	    }
+	int m = toInt(n);
+	if (special && m % 2 != 0) {
+	    return new BigDecimal(Factorials.doubleFactorial(m - 1).multiply(BigInteger.valueOf(m)));
+	}
+	return new BigDecimal(Factorials.doubleFactorial(m));
+    }
+
+    /**
+     * Computes the binomial coefficient n choose k, which is the number of ways to
+     * choose k items from n items. The coefficient is built from its prime
+     * factorization rather than from three factorials.
+     * 
+     * @param n
+     *            The number of items
+     * @param k
+     *            The number of items chosen
+     * @return n!/(k!(n-k)!), or 0 if k < 0 or k > n
+     * @throws ArithmeticException
+     *             if n or k is not an integer, if n < 0, or if n is too large
+     */
+    public static BigDecimal binomial(BigDecimal n, BigDecimal k) {
+	if (n.compareTo(BigDecimal.ZERO) < 0) {
+	    throw new ArithmeticException("Binomial coefficient is not defined for n < 0");
+	}
+	return new BigDecimal(Factorials.binomial(toInt(n), toInt(k)));
+    }
 
+    /**
+     * Computes the gamma function, which extends the factorial to real numbers
+     * with &Gamma;(n)=(n-1)!. Integers and half integers are computed exactly
+     * from factorials when they are small enough. Other positive numbers use
+     * Spouge's approximation, and negative numbers use the reflection formula
+     * &Gamma;(x)=&pi;/(sin(&pi;x)&Gamma;(1-x)).
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return &Gamma;(x)
+     * @throws ArithmeticException
+     *             if x is zero or a negative integer
+     */
+    public static BigDecimal gamma(BigDecimal x, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("gamma", measured -> gamma(x, measured));
 	}
-	return result;
+	MathContext mc = cc.getAsMathContext();
+	checkGammaPole(x);
+	BigDecimal exact = gammaExact(x, cc);
+	if (exact != null) {
+	    cc.setTermsUsed(0);
+	    return exact.round(mc);
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("gamma", cached -> gamma(x, cached), x);
+	}
+	if (x.signum() < 0) {
+	    ComputeContext work = cc.withPrecision(mc.getPrecision() + reflectionDigits(x) + 5);
+	    MathContext workMc = work.getAsMathContext();
+	    BigDecimal pi = pi(work);
+	    BigDecimal sin = sin(pi.multiply(x), work);
+	    return pi.divide(sin.multiply(gamma(BigDecimal.ONE.subtract(x), work), workMc), mc);
+	}
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + 5);
+	MathContext workMc = work.getAsMathContext();
+	boolean shift = x.compareTo(BigDecimal.ONE) < 0;
+	BigDecimal[] split = Spouge.forPrecision(work.getResultPrecision(), work)
+		.split(shift ? x : x.subtract(BigDecimal.ONE), work);
+	BigDecimal result = exp(split[0], work).multiply(split[1], workMc);
+	cc.setTermsUsed(work.getTermsUsed());
+	return shift ? result.divide(x, mc) : result.round(mc);
+    }
+
+    /**
+     * Computes the natural logarithm of the absolute value of the gamma
+     * function. This is much faster than ln(&Gamma;(x)) for large x, because
+     * &Gamma;(x) has about x*log10(x) digits before the decimal point.
+     * 
+     * @param x
+     *            The number
+     * @param cc
+     *            The context to use in calculation
+     * @return ln(|&Gamma;(x)|)
+     * @throws ArithmeticException
+     *             if x is zero or a negative integer
+     * @see #gamma(BigDecimal, ComputeContext)
+     */
+    public static BigDecimal lnGamma(BigDecimal x, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("lnGamma", measured -> lnGamma(x, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("lnGamma", cached -> lnGamma(x, cached), x);
+	}
+	MathContext mc = cc.getAsMathContext();
+	checkGammaPole(x);
+	BigDecimal exact = gammaExact(x, cc);
+	if (exact != null) {
+	    return ln(exact.abs(), cc);
+	}
+	if (x.signum() < 0) {
+	    ComputeContext work = cc.withPrecision(mc.getPrecision() + reflectionDigits(x) + 5);
+	    BigDecimal pi = pi(work);
+	    BigDecimal sin = sin(pi.multiply(x), work).abs();
+	    BigDecimal result = ln(pi, work).subtract(ln(sin, work))
+		    .subtract(lnGamma(BigDecimal.ONE.subtract(x), work));
+	    return result.round(mc);
+	}
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + 5);
+	boolean shift = x.compareTo(BigDecimal.ONE) < 0;
+	BigDecimal[] split = Spouge.forPrecision(work.getResultPrecision(), work)
+		.split(shift ? x : x.subtract(BigDecimal.ONE), work);
+	BigDecimal result = split[0].add(ln(split[1], work));
+	if (shift) {
+	    result = result.subtract(ln(x, work));
+	}
+	cc.setTermsUsed(work.getTermsUsed());
+	return result.round(mc);
+    }
+
+    /**
+     * Computes the beta function B(a, b)=&Gamma;(a)&Gamma;(b)/&Gamma;(a+b).
+     * 
+     * @param a
+     *            The first number
+     * @param b
+     *            The second number
+     * @param cc
+     *            The context to use in calculation
+     * @return B(a, b)
+     * @throws ArithmeticException
+     *             if a or b is zero or a negative integer
+     */
+    public static BigDecimal beta(BigDecimal a, BigDecimal b, ComputeContext cc) {
+	if (cc.getMetrics() != null) {
+	    return cc.measure("beta", measured -> beta(a, b, measured));
+	}
+	if (cc.getResultCache() != null) {
+	    return cc.cached("beta", cached -> beta(a, b, cached), a, b);
+	}
+	checkGammaPole(a);
+	checkGammaPole(b);
+	BigDecimal sum = a.add(b);
+	if (sum.signum() <= 0 && isInteger(sum)) {
+	    cc.setTermsUsed(0);
+	    return BigDecimal.ZERO;
+	}
+	MathContext mc = cc.getAsMathContext();
+	ComputeContext work = cc.withPrecision(mc.getPrecision() + 5);
+	MathContext workMc = work.getAsMathContext();
+	BigDecimal numerator = gamma(a, work).multiply(gamma(b, work), workMc);
+	return numerator.divide(gamma(sum, work), mc);
+    }
+
+    /**
+     * Computes &Gamma;(x) exactly from factorials if x is a small integer or half
+     * integer. Half integers use &Gamma;(n+1/2)=(2n-1)!!*sqrt(&pi;)/2^n and
+     * &Gamma;(1/2-n)=(-2)^n*sqrt(&pi;)/(2n-1)!!.
+     * 
+     * @return &Gamma;(x), with the precision of the context if it contains
+     *         sqrt(&pi;), or null if x does not have a fast path
+     */
+    private static BigDecimal gammaExact(BigDecimal x, ComputeContext cc) {
+	if (x.abs().compareTo(BigDecimal.valueOf(Math.max(EXACT_GAMMA_LIMIT, 4L * cc.getResultPrecision()))) > 0) {
+	    return null;
+	}
+	if (isInteger(x)) {
+	    return new BigDecimal(Factorials.factorial(x.intValueExact() - 1, cc));
+	}
+	BigDecimal twice = x.multiply(BigDecimal.valueOf(2));
+	if (!isInteger(twice)) {
+	    return null;
+	}
+	ComputeContext work = cc.withPrecision(cc.getResultPrecision() + 5);
+	MathContext workMc = work.getAsMathContext();
+	BigDecimal sqrtPi = sqrt(pi(work), workMc);
+	int n = (twice.intValueExact() - 1) / 2;
+	if (n >= 0) {
+	    BigDecimal numerator = new BigDecimal(Factorials.doubleFactorial(2 * n - 1)).multiply(sqrtPi);
+	    return numerator.divide(new BigDecimal(BigInteger.ONE.shiftLeft(n)), workMc);
+	}
+	BigDecimal numerator = new BigDecimal(BigInteger.valueOf(-2).pow(-n)).multiply(sqrtPi);
+	return numerator.divide(new BigDecimal(Factorials.doubleFactorial(-2 * n - 1)), workMc);
+    }
+
+    /**
+     * Chooses the extra digits the reflection formula needs for a negative x.
+     * &pi;x must be accurate to the digits of the fraction of x, and sin(&pi;x)
+     * loses digits when x is close to an integer.
+     */
+    private static int reflectionDigits(BigDecimal x) {
+	BigDecimal fraction = x.subtract(x.setScale(0, RoundingMode.HALF_EVEN));
+	return (int) Math.ceil(Math.max(0, approximateLog10(x)) + Math.max(0, -approximateLog10(fraction)));
+    }
+
+    /**
+     * Checks that x is not a pole of the gamma function.
+     * 
+     * @throws ArithmeticException
+     *             if x is zero or a negative integer
+     */
+    private static void checkGammaPole(BigDecimal x) {
+	if (x.signum() <= 0 && isInteger(x)) {
+	    throw new ArithmeticException("gamma() is not defined at " + x);
+	}
+    }
+
+    /**
+     * Checks whether a has no fractional part.
+     */
+    private static boolean isInteger(BigDecimal a) {
+	return a.signum() == 0 || a.stripTrailingZeros().scale() <= 0;
+    }
+
+    /**
+     * Converts an integer valued {@code BigDecimal} to an int for the factorial
+     * functions.
+     * 
+     * @throws ArithmeticException
+     *             if a is not an integer or does not fit in an int
+     */
+    private static int toInt(BigDecimal a) {
+	try {
+	    return a.intValueExact();
+	} catch (ArithmeticException e) {
+	    throw new ArithmeticException("Expected an integer that fits in an int, but got " + a);
+	}
+    }
+
+    /**
+     * Computes the square root of a to the precision of the given
+     * {@code MathContext}. The number must not be negative.
+     * 
+     * @param a
+     *            The number
+     * @param mc
+     *            The context that defines the precision of the result
+     * @return sqrt(a)
+     */
+    static BigDecimal sqrt(BigDecimal a, MathContext mc) {
+	return sqrt(a, mc, DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Computes the square root of a to the precision of the given
+     * {@code MathContext}, checking the deadline and cancellation token of the
+     * {@code ComputeContext} between Newton steps.
+     */
+    private static BigDecimal sqrt(BigDecimal a, MathContext mc, ComputeContext cc) {
+	if (a.signum() == 0) {
+	    return BigDecimal.ZERO;
+	}
+	MathContext workMc = new MathContext(mc.getPrecision() + 5, mc.getRoundingMode());
+	return a.multiply(inverseRoot(a, 2, workMc, cc), workMc).round(mc);
+    }
+
+    /**
+     * Computes a^(-1/n) for a positive number a with Newton's method on
+     * f(y)=y^(-n)-a, which needs no division:<br />
+     * <br />
+     * y = y + y*(1-a*y^n)/n<br />
+     * <br />
+     * The estimate starts from a double, and since each step doubles the number
+     * of correct digits the working precision is doubled with it. The last step
+     * is the only one done at full precision.
+     * 
+     * @param a
+     *            The number, which must be positive
+     * @param n
+     *            The degree of the root, which must be positive
+     * @param mc
+     *            The context that defines the precision of the result
+     * @param cc
+     *            The context that gives the deadline, cancellation token and
+     *            progress listener
+     * @return a^(-1/n)
+     */
+    private static BigDecimal inverseRoot(BigDecimal a, int n, MathContext mc, ComputeContext cc) {
+	double log10 = approximateLog10(a) / n;
+	int exponent = (int) Math.floor(log10);
+	BigDecimal y = new BigDecimal(Math.pow(10, exponent - log10)).movePointLeft(exponent);
+	BigDecimal divisor = BigDecimal.valueOf(n);
+	int target = mc.getPrecision() + 3;
+	cc.recordWork(target, 0);
+	for (int precision = 14; precision < target;) {
+	    cc.reportProgress("newton", precision, target);
+	    precision = Math.min(2 * precision, target);
+	    MathContext workMc = new MathContext(precision + 3, mc.getRoundingMode());
+	    BigDecimal residual = BigDecimal.ONE.subtract(a.round(workMc).multiply(y.pow(n, workMc), workMc));
+	    y = y.add(y.multiply(residual, workMc).divide(divisor, workMc), workMc);
+	}
+	return y.round(mc);
+    }
+
+    /**
+     * Estimates log10(|a|) using double precision.
+     * 
+     * @param a
+     *            The number
+     * @return log10(|a|), or negative infinity if a is zero
+     */
+    static double approximateLog10(BigDecimal a) {
+	if (a.signum() == 0) {
+	    return Double.NEGATIVE_INFINITY;
+	}
+	BigDecimal rounded = a.round(MathContext.DECIMAL64);
+	return Math.log10(Math.abs(rounded.unscaledValue().doubleValue())) - rounded.scale();
     }
 
     /**
      * Prints the number to the console with a specified number of digits per line.
+     * The digits are streamed by a {@link DigitWriter}, so the whole number is
+     * never held as a string.
      * 
      * @param d
      *            The number
@@ -372,16 +1826,13 @@ public class BigDecimalMath {
      *            The number of digits per line
      */
     public static void printNumber(BigDecimal d, int digitsPerLine) {
-	String str = d.toPlainString();
-	for (int i = 0; i < str.length(); i += digitsPerLine) {
-	    int end = i + digitsPerLine;
-	    System.out.println(str.substring(i, end > str.length() ? str.length() : end));
-	}
+	printNumber(d, digitsPerLine, Long.MAX_VALUE);
     }
 
     /**
      * Prints the number to the console with a specified number of digits per line,
-     * as well as a limit on how many digits are printed.
+     * as well as a limit on how many digits are printed. Printing stops at the
+     * end of the line that reaches the limit.
      * 
      * @param d
      *            The number
@@ -391,10 +1842,15 @@ public class BigDecimalMath {
      *            The maximum number of digits that will print
      */
     public static void printNumber(BigDecimal d, int digitsPerLine, int digits) {
-	String str = d.toPlainString();
-	for (int i = 0; i < Math.min(str.length(), digits); i += digitsPerLine) {
-	    int end = i + digitsPerLine;
-	    System.out.println(str.substring(i, end > str.length() ? str.length() : end));
+	long lines = digits <= 0 ? 0 : ((long) digits + digitsPerLine - 1) / digitsPerLine;
+	printNumber(d, digitsPerLine, lines * digitsPerLine);
+    }
+
+    private static void printNumber(BigDecimal d, int digitsPerLine, long limit) {
+	try {
+	    new DigitWriter(digitsPerLine).write(d, System.out, limit);
+	} catch (IOException e) {
+	    throw new UncheckedIOException(e);
 	}
     }
 
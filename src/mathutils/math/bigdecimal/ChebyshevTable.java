@@ -0,0 +1,242 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import mathutils.math.context.ComputeContext;
+
+/**
+ * A piecewise Chebyshev expansion of sin, cos or exp on the interval that
+ * {@link BigDecimalMath} reduces their arguments to: [-&pi;/4, &pi;/4] for sin
+ * and cos and [-1/2, 1/2] for exp. The interval is split into
+ * {@value #PIECES} pieces of equal width, and on each piece the function is
+ * interpolated at the Chebyshev nodes. The number of nodes is chosen from a
+ * bound on the Chebyshev coefficients of the function, so that the truncated
+ * expansion is accurate to the precision of the table. The coefficients are
+ * kept as binary fixed point integers like the terms in {@link Series}, and an
+ * argument is evaluated with the Clenshaw recurrence on the coefficients of its
+ * piece, which costs one integer multiplication and shift per coefficient.
+ * Since the error of a fixed point value is absolute, the table of sin holds
+ * sin(x)/x, which is near 1 on the whole interval, and its value is multiplied
+ * by x. The result then keeps its relative accuracy for the tiny angles that
+ * arguments close to a multiple of &pi; reduce to.<br />
+ * <br />
+ * Building a table takes as long as a few hundred ordinary evaluations, so
+ * tables are only used when {@link ComputeContext#isChebyshev()} is set, and
+ * they are cached for each function and precision. A table is built with the
+ * deadline, cancellation token and progress listener of the call that needs
+ * it, and is only cached once it is complete. Two threads that need the same
+ * table at once may both build it. This class is thread-safe.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+final class ChebyshevTable {
+
+    /**
+     * The highest result precision that tables are used for. Above it the series
+     * need few enough terms that building a table does not pay off.
+     */
+    static final int MAX_DIGITS = 100;
+
+    private static final int PIECES = 16;
+
+    /**
+     * The number of digits the coefficients carry beyond the precision of the
+     * table, to absorb the rounding errors of the recurrence.
+     */
+    private static final int GUARD_DIGITS = 5;
+
+    private static final double LOG2_10 = Math.log(10) / Math.log(2);
+
+    private static final Map<String, ChebyshevTable> TABLES = new ConcurrentHashMap<String, ChebyshevTable>();
+
+    private final MathContext mc;
+    private final int bits;
+    private final BigDecimal one;
+    private final boolean divided;
+    private final double lower;
+    private final double pieceWidth;
+    private final BigInteger inverseHalfWidth;
+    private final BigInteger[] centers;
+
+    /**
+     * The coefficients of each piece, where the first is already halved.
+     */
+    private final BigInteger[][] coefficients;
+
+    private ChebyshevTable(MathFunction function, BigDecimal lower, BigDecimal upper, double derivativeBound,
+	    int digits, ComputeContext cc) {
+	int precision = cc.getResultPrecision();
+	mc = new MathContext(precision, RoundingMode.HALF_EVEN);
+	bits = (int) Math.ceil(precision * LOG2_10);
+	one = new BigDecimal(BigInteger.ONE.shiftLeft(bits));
+	divided = function == MathFunction.SIN;
+	BigDecimal halfWidth = upper.subtract(lower).divide(BigDecimal.valueOf(2 * PIECES), mc);
+	this.lower = lower.doubleValue();
+	pieceWidth = 2 * halfWidth.doubleValue();
+	inverseHalfWidth = Series.toFixed(BigDecimal.ONE.divide(halfWidth, mc), bits);
+
+	int n = nodes(halfWidth.doubleValue(), derivativeBound, digits);
+	BigDecimal[] nodes = new BigDecimal[n];
+	BigDecimal step = BigDecimalMath.pi(cc).divide(BigDecimal.valueOf(2 * n), mc);
+	for (int k = 0; k < n; k++) {
+	    nodes[k] = BigDecimalMath.cos(step.multiply(BigDecimal.valueOf(2 * k + 1)), cc);
+	}
+	// T_j at every node, from T_j=2t*T_j-1-T_j-2
+	BigDecimal[][] polynomials = new BigDecimal[n][n];
+	for (int k = 0; k < n; k++) {
+	    polynomials[0][k] = BigDecimal.ONE;
+	    if (n > 1) {
+		polynomials[1][k] = nodes[k];
+	    }
+	    for (int j = 2; j < n; j++) {
+		polynomials[j][k] = nodes[k].add(nodes[k]).multiply(polynomials[j - 1][k], mc)
+			.subtract(polynomials[j - 2][k], mc);
+	    }
+	}
+
+	centers = new BigInteger[PIECES];
+	coefficients = new BigInteger[PIECES][n];
+	BigDecimal scale = BigDecimal.valueOf(2).divide(BigDecimal.valueOf(n), mc);
+	for (int i = 0; i < PIECES; i++) {
+	    cc.reportProgress("chebyshev", i, PIECES);
+	    BigDecimal center = lower.add(halfWidth.multiply(BigDecimal.valueOf(2 * i + 1)), mc);
+	    centers[i] = Series.toFixed(center, bits);
+	    BigDecimal[] values = new BigDecimal[n];
+	    for (int k = 0; k < n; k++) {
+		BigDecimal x = center.add(halfWidth.multiply(nodes[k]), mc);
+		values[k] = function.apply(x, cc);
+		if (divided) {
+		    // the nodes are inside the pieces, so x is never zero
+		    values[k] = values[k].divide(x, mc);
+		}
+	    }
+	    for (int j = 0; j < n; j++) {
+		BigDecimal sum = BigDecimal.ZERO;
+		for (int k = 0; k < n; k++) {
+		    sum = sum.add(values[k].multiply(polynomials[j][k], mc), mc);
+		}
+		BigDecimal coefficient = sum.multiply(j == 0 ? scale.divide(BigDecimal.valueOf(2), mc) : scale, mc);
+		coefficients[i][j] = Series.toFixed(coefficient, bits);
+	    }
+	}
+	cc.reportProgress("chebyshev", PIECES, PIECES);
+    }
+
+    /**
+     * Gets the table of a function for the given working precision, building it
+     * if it is not cached yet.
+     * 
+     * @param function
+     *            {@link MathFunction#SIN}, {@link MathFunction#COS} or
+     *            {@link MathFunction#EXP}
+     * @param digits
+     *            The number of digits the values need
+     * @param cc
+     *            The context of the call that needs the table
+     * @return The table
+     * @throws IllegalArgumentException
+     *             if the function has no table
+     * @throws java.util.concurrent.CancellationException
+     *             if the computation is cancelled while the table is built
+     */
+    static ChebyshevTable get(MathFunction function, int digits, ComputeContext cc) {
+	String key = function + ":" + digits;
+	ChebyshevTable table = TABLES.get(key);
+	if (table == null) {
+	    table = create(function, digits, cc);
+	    ChebyshevTable built = TABLES.putIfAbsent(key, table);
+	    if (built != null) {
+		table = built;
+	    }
+	}
+	return table;
+    }
+
+    /**
+     * Checks whether a context selects tables and asks for few enough digits that
+     * they are used.
+     */
+    static boolean isUsable(ComputeContext cc) {
+	return cc.isChebyshev() && cc.getResultPrecision() <= MAX_DIGITS;
+    }
+
+    /**
+     * Builds a table with a copy of the context of the caller that evaluates
+     * with series, so that the deadline and cancellation token of the caller
+     * also stop the build.
+     */
+    private static ChebyshevTable create(MathFunction function, int digits, ComputeContext cc) {
+	ComputeContext work = cc.withPrecision(digits + GUARD_DIGITS);
+	work.setChebyshev(false);
+	work.setAdaptive(true);
+	switch (function) {
+	case SIN:
+	case COS:
+	    BigDecimal quarterPi = BigDecimalMath.pi(work).divide(BigDecimal.valueOf(4));
+	    return new ChebyshevTable(function, quarterPi.negate(), quarterPi, 1, digits, work);
+	case EXP:
+	    BigDecimal half = new BigDecimal("0.5");
+	    return new ChebyshevTable(function, half.negate(), half, 2, digits, work);
+	default:
+	    throw new IllegalArgumentException("There is no Chebyshev table for " + function);
+	}
+    }
+
+    /**
+     * Chooses the number of nodes for pieces of the given half width. The
+     * coefficient of T_n is at most 2M(h/2)^n/n! when every derivative of the
+     * function is at most M on the piece, and the coefficients that are left out
+     * add at most twice that to the error, once by truncation and once by
+     * aliasing.
+     */
+    private static int nodes(double halfWidth, double derivativeBound, int digits) {
+	double log10Half = Math.log10(halfWidth / 2);
+	double log10Coefficient = Math.log10(8 * derivativeBound);
+	int n = 0;
+	while (log10Coefficient > -digits - 1) {
+	    n++;
+	    log10Coefficient += log10Half - Math.log10(n);
+	}
+	return n;
+    }
+
+    /**
+     * Gets the number of coefficients summed for each value.
+     * 
+     * @return The number of coefficients
+     */
+    int getTerms() {
+	return coefficients[0].length;
+    }
+
+    /**
+     * Evaluates the function at an argument within the interval of the table.
+     * 
+     * @param x
+     *            The argument
+     * @return The value, with a few digits more than the precision of the table
+     */
+    BigDecimal evaluate(BigDecimal x) {
+	int piece = (int) Math.floor((x.doubleValue() - lower) / pieceWidth);
+	piece = Math.max(0, Math.min(PIECES - 1, piece));
+	BigInteger t = Series.toFixed(x, bits).subtract(centers[piece]).multiply(inverseHalfWidth).shiftRight(bits);
+	BigInteger[] c = coefficients[piece];
+	BigInteger b1 = BigInteger.ZERO;
+	BigInteger b2 = BigInteger.ZERO;
+	for (int j = c.length - 1; j > 0; j--) {
+	    BigInteger b = t.multiply(b1).shiftRight(bits - 1).subtract(b2).add(c[j]);
+	    b2 = b1;
+	    b1 = b;
+	}
+	BigInteger sum = t.multiply(b1).shiftRight(bits).subtract(b2).add(c[0]);
+	BigDecimal value = new BigDecimal(sum).divide(one, mc);
+	return divided ? x.multiply(value, mc) : value;
+    }
+
+}
@@ -0,0 +1,101 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.concurrent.ForkJoinTask;
+
+import mathutils.math.context.ComputeContext;
+
+/**
+ * Computes &pi; using the Chudnovsky series. Each term of the series adds about
+ * 14 digits, and the terms are summed by binary splitting so that all of the
+ * work is done with exact {@code BigInteger} products. Only one square root and
+ * one division are done at the full precision, which makes the total cost
+ * quasi-linear in the number of digits. Large subtrees of the splitting can be
+ * computed in parallel.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+class Chudnovsky {
+
+    /**
+     * The number of decimal digits each term of the series contributes, which is
+     * log10(640320^3 / 1728).
+     */
+    static final double DIGITS_PER_TERM = 14.181647462725477;
+
+    private static final BigInteger A = BigInteger.valueOf(13591409);
+    private static final BigInteger B = BigInteger.valueOf(545140134);
+    private static final BigInteger C3_OVER_24 = BigInteger.valueOf(640320).pow(3).divide(BigInteger.valueOf(24));
+    private static final BigInteger MULTIPLIER = BigInteger.valueOf(426880);
+    private static final BigDecimal SQRT_ARGUMENT = BigDecimal.valueOf(10005);
+
+    /**
+     * Ranges of at least this many terms are split between threads.
+     */
+    private static final long PARALLEL_TERMS = 512;
+
+    private Chudnovsky() {
+
+    }
+
+    /**
+     * Computes &pi; to the precision of the given {@code MathContext}.
+     * 
+     * @param mc
+     *            The context that defines the precision and rounding of the result
+     * @param cc
+     *            The context that gives the threads, deadline and cancellation
+     *            token of the computation
+     * @return &pi;
+     */
+    static BigDecimal pi(MathContext mc, ComputeContext cc) {
+	int digits = mc.getPrecision() + 10;
+	long terms = (long) (digits / DIGITS_PER_TERM) + 1;
+	int threads = cc.getThreads();
+	BigInteger[] pqt = Parallel.invoke(threads, () -> split(0, terms, threads > 1, cc));
+	cc.checkCancelled();
+	MathContext workMc = new MathContext(digits);
+	BigDecimal sqrt = BigDecimalMath.sqrt(SQRT_ARGUMENT, workMc);
+	BigDecimal numerator = sqrt.multiply(new BigDecimal(pqt[1].multiply(MULTIPLIER)), workMc);
+	return numerator.divide(new BigDecimal(pqt[2]), mc);
+    }
+
+    /**
+     * Sums the terms a (inclusive) through b (exclusive) of the series. The
+     * returned array holds P(a, b), Q(a, b) and T(a, b), where T/Q is the sum of
+     * the terms relative to term a and P/Q is the ratio of term b to term a.
+     * If parallel is true, large ranges fork their left half. Every range of more
+     * than one term checks whether the computation is cancelled.
+     */
+    private static BigInteger[] split(long a, long b, boolean parallel, ComputeContext cc) {
+	if (b - a == 1) {
+	    if (a == 0) {
+		return new BigInteger[] { BigInteger.ONE, BigInteger.ONE, A };
+	    }
+	    BigInteger p = BigInteger.valueOf(6 * a - 5).multiply(BigInteger.valueOf(2 * a - 1))
+		    .multiply(BigInteger.valueOf(6 * a - 1)).negate();
+	    BigInteger q = BigInteger.valueOf(a).pow(3).multiply(C3_OVER_24);
+	    BigInteger t = p.multiply(A.add(B.multiply(BigInteger.valueOf(a))));
+	    return new BigInteger[] { p, q, t };
+	}
+	cc.checkCancelled();
+	long m = (a + b) / 2;
+	if (parallel && b - a >= PARALLEL_TERMS) {
+	    ForkJoinTask<BigInteger[]> leftTask = Parallel.fork(() -> split(a, m, true, cc));
+	    BigInteger[] right = split(m, b, true, cc);
+	    BigInteger[] left = leftTask.join();
+	    ForkJoinTask<BigInteger> p = Parallel.fork(() -> left[0].multiply(right[0]));
+	    ForkJoinTask<BigInteger> q = Parallel.fork(() -> left[1].multiply(right[1]));
+	    BigInteger t = left[2].multiply(right[1]).add(left[0].multiply(right[2]));
+	    return new BigInteger[] { p.join(), q.join(), t };
+	}
+	BigInteger[] left = split(a, m, false, cc);
+	BigInteger[] right = split(m, b, false, cc);
+	return new BigInteger[] { left[0].multiply(right[0]), left[1].multiply(right[1]),
+		left[2].multiply(right[1]).add(left[0].multiply(right[2])) };
+    }
+
+}
@@ -0,0 +1,174 @@
+package mathutils.math.bigdecimal;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import mathutils.math.context.ComputeContext;
+
+/**
+ * Holds the most precise value of a mathematical constant computed so far. The
+ * constant is not computed until it is first requested. A request for fewer
+ * digits than are already known is answered by rounding the known value, and a
+ * request for more digits replaces the known value with a more precise one.
+ * Named constants are also read from and written to the {@link ConstantStore}
+ * if one is set, so that they are only computed once across processes. This
+ * class is thread-safe.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+class ConstantCache {
+
+    /**
+     * Extra digits computed beyond the requested precision so that rounding the
+     * cached value to a lower precision is still correct.
+     */
+    private static final int GUARD_DIGITS = 10;
+
+    private static volatile ConstantStore store;
+
+    private final String name;
+    private final Generator generator;
+    private volatile BigDecimal value;
+    private volatile int precision;
+
+    /**
+     * Creates a cache for a constant that is never stored.
+     * 
+     * @param generator
+     *            The function that computes the constant
+     */
+    ConstantCache(Generator generator) {
+	this(null, generator);
+    }
+
+    /**
+     * Creates a cache for a constant that is kept in the store under the given
+     * name.
+     * 
+     * @param name
+     *            The name of the constant in the store
+     * @param generator
+     *            The function that computes the constant
+     */
+    ConstantCache(String name, Generator generator) {
+	this.name = name;
+	this.generator = generator;
+    }
+
+    /**
+     * Sets the store that named constants are read from before they are
+     * computed, and written to after.
+     * 
+     * @param store
+     *            The store, or null to keep constants in memory only
+     */
+    static void setStore(ConstantStore store) {
+	ConstantCache.store = store;
+    }
+
+    /**
+     * Gets the constant rounded to the given {@code MathContext}, computing it
+     * first on the calling thread if not enough digits are known.
+     * 
+     * @param mc
+     *            The context that defines the precision and rounding of the result
+     * @return The constant
+     */
+    BigDecimal get(MathContext mc) {
+	return get(mc, BigDecimalMath.DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Gets the constant rounded to the given {@code MathContext}, computing it
+     * first if not enough digits are known. If the computation is cancelled
+     * the known value is kept, and the next request computes it again.
+     * 
+     * @param mc
+     *            The context that defines the precision and rounding of the result
+     * @param cc
+     *            The context that gives the threads, deadline and cancellation
+     *            token of the computation
+     * @return The constant
+     */
+    BigDecimal get(MathContext mc, ComputeContext cc) {
+	if (precision < mc.getPrecision()) {
+	    synchronized (this) {
+		if (precision < mc.getPrecision() && !load(mc.getPrecision())) {
+		    value = generator.compute(new MathContext(mc.getPrecision() + GUARD_DIGITS), cc);
+		    precision = mc.getPrecision();
+		    save();
+		}
+	    }
+	}
+	return value.round(mc);
+    }
+
+    /**
+     * Reads the constant from the store if it holds enough digits. Since the
+     * store only saves work, a store that cannot be read is ignored.
+     */
+    private boolean load(int digits) {
+	ConstantStore current = store;
+	if (name == null || current == null) {
+	    return false;
+	}
+	try {
+	    ConstantStore.Entry entry = current.load(name);
+	    if (entry != null && entry.getDigits() >= digits) {
+		value = entry.getValue();
+		precision = entry.getDigits();
+		return true;
+	    }
+	} catch (IOException e) {
+	    // compute the constant instead
+	}
+	return false;
+    }
+
+    /**
+     * Writes the constant to the store. Failures are ignored, as the constant
+     * can always be computed again.
+     */
+    private void save() {
+	ConstantStore current = store;
+	if (name == null || current == null) {
+	    return;
+	}
+	try {
+	    current.save(name, value, precision);
+	} catch (IOException e) {
+	    // the next process computes the constant again
+	}
+    }
+
+    /**
+     * Gets the number of correct digits currently known.
+     * 
+     * @return The number of digits, or zero if the constant has not been computed
+     */
+    int getPrecision() {
+	return precision;
+    }
+
+    /**
+     * Computes the value of a constant.
+     */
+    interface Generator {
+
+	/**
+	 * Computes the constant to the precision of the given {@code MathContext}.
+	 * 
+	 * @param mc
+	 *            The context that defines the precision of the result
+	 * @param cc
+	 *            The context that gives the threads, deadline and cancellation
+	 *            token of the computation
+	 * @return The constant
+	 */
+	BigDecimal compute(MathContext mc, ComputeContext cc);
+
+    }
+
+}
@@ -0,0 +1,215 @@
+package mathutils.math.bigdecimal;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps precomputed constants in a directory, one file per constant, so that a
+ * new process can read them instead of computing them again. Each file holds a
+ * header and the bytes of the unscaled value:<br />
+ * <br />
+ * <table border>
+ * <tr>
+ * <th>Offset</th>
+ * <th>Field</th>
+ * </tr>
+ * <tr>
+ * <td>0</td>
+ * <td>The magic number 0x42444331</td>
+ * </tr>
+ * <tr>
+ * <td>4</td>
+ * <td>The format version</td>
+ * </tr>
+ * <tr>
+ * <td>8</td>
+ * <td>The number of correct digits</td>
+ * </tr>
+ * <tr>
+ * <td>12</td>
+ * <td>The scale</td>
+ * </tr>
+ * <tr>
+ * <td>16</td>
+ * <td>The length of the unscaled value in bytes</td>
+ * </tr>
+ * <tr>
+ * <td>20</td>
+ * <td>The CRC-32 of the first 20 bytes and the unscaled value</td>
+ * </tr>
+ * <tr>
+ * <td>24</td>
+ * <td>The unscaled value in the format of {@link BigInteger#toByteArray()}</td>
+ * </tr>
+ * </table>
+ * <br />
+ * Files are read through a memory mapping. They are written to a temporary file
+ * first and then moved over the old file, so a reader never sees a partly
+ * written file. A file that is damaged or has a different format is treated as
+ * missing. This class is thread-safe, and several processes may share a
+ * directory.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public class ConstantStore {
+
+    private static final int MAGIC = 0x42444331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int CHECKED_HEADER_SIZE = 20;
+    private static final String EXTENSION = ".bdc";
+
+    private final Path directory;
+
+    /**
+     * Creates a store that keeps its files in the given directory. The directory
+     * is created when the first constant is saved.
+     * 
+     * @param directory
+     *            The directory
+     */
+    public ConstantStore(Path directory) {
+	this.directory = directory;
+    }
+
+    public Path getDirectory() {
+	return directory;
+    }
+
+    /**
+     * Reads a constant.
+     * 
+     * @param name
+     *            The name of the constant
+     * @return The constant, or null if it is not stored or its file is damaged
+     * @throws IOException
+     *             if the file exists but cannot be read
+     */
+    public Entry load(String name) throws IOException {
+	try (FileChannel channel = FileChannel.open(file(name), StandardOpenOption.READ)) {
+	    long size = channel.size();
+	    if (size < HEADER_SIZE) {
+		return null;
+	    }
+	    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	    int digits = buffer.getInt(8);
+	    int scale = buffer.getInt(12);
+	    int length = buffer.getInt(16);
+	    if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || digits <= 0 || length <= 0
+		    || length > size - HEADER_SIZE) {
+		return null;
+	    }
+	    int checksum = buffer.getInt(CHECKED_HEADER_SIZE);
+	    byte[] unscaled = new byte[length];
+	    buffer.position(HEADER_SIZE);
+	    buffer.get(unscaled);
+	    buffer.position(0);
+	    buffer.limit(CHECKED_HEADER_SIZE);
+	    if (checksum != checksum(buffer.slice(), unscaled)) {
+		return null;
+	    }
+	    return new Entry(new BigDecimal(new BigInteger(unscaled), scale), digits);
+	} catch (NoSuchFileException e) {
+	    return null;
+	}
+    }
+
+    /**
+     * Writes a constant, unless the store already holds at least as many digits
+     * of it.
+     * 
+     * @param name
+     *            The name of the constant
+     * @param value
+     *            The constant
+     * @param digits
+     *            The number of digits of the value that are correct
+     * @throws IOException
+     *             if the file cannot be written
+     */
+    public void save(String name, BigDecimal value, int digits) throws IOException {
+	Entry stored = load(name);
+	if (stored != null && stored.getDigits() >= digits) {
+	    return;
+	}
+	byte[] unscaled = value.unscaledValue().toByteArray();
+	ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+	header.putInt(MAGIC).putInt(VERSION).putInt(digits).putInt(value.scale()).putInt(unscaled.length);
+	ByteBuffer checked = header.duplicate();
+	checked.flip();
+	header.putInt(checksum(checked, unscaled));
+	header.flip();
+
+	Files.createDirectories(directory);
+	Path temporary = Files.createTempFile(directory, name, ".tmp");
+	try {
+	    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+		ByteBuffer data = ByteBuffer.wrap(unscaled);
+		while (header.hasRemaining() || data.hasRemaining()) {
+		    channel.write(new ByteBuffer[] { header, data });
+		}
+		channel.force(true);
+	    }
+	    try {
+		Files.move(temporary, file(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	    } catch (AtomicMoveNotSupportedException e) {
+		Files.move(temporary, file(name), StandardCopyOption.REPLACE_EXISTING);
+	    }
+	} finally {
+	    Files.deleteIfExists(temporary);
+	}
+    }
+
+    private Path file(String name) {
+	return directory.resolve(name + EXTENSION);
+    }
+
+    private static int checksum(ByteBuffer header, byte[] unscaled) {
+	CRC32 crc = new CRC32();
+	crc.update(header);
+	crc.update(unscaled);
+	return (int) crc.getValue();
+    }
+
+    /**
+     * A constant read from the store.
+     */
+    public static class Entry {
+
+	private final BigDecimal value;
+	private final int digits;
+
+	Entry(BigDecimal value, int digits) {
+	    this.value = value;
+	    this.digits = digits;
+	}
+
+	public BigDecimal getValue() {
+	    return value;
+	}
+
+	/**
+	 * Gets the number of digits of the value that are correct. The value may
+	 * hold more digits than this.
+	 * 
+	 * @return The number of correct digits
+	 */
+	public int getDigits() {
+	    return digits;
+	}
+
+    }
+
+}
@@ -0,0 +1,218 @@
+package mathutils.math.bigdecimal;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Produces the decimal digits of a constant one at a time, without knowing in
+ * advance how many will be needed. This is Gibbons' unbounded spigot: the
+ * constant is written as an infinite composition of linear fractional
+ * transformations<br />
+ * <br />
+ * &pi; = 2 + 1/3(2 + 2/5(2 + 3/7(2 + ...)))<br />
+ * e = 1 + 1/1(1 + 1/2(1 + 1/3(1 + ...)))<br />
+ * <br />
+ * and the terms consumed so far are multiplied into one transformation M. The
+ * rest of the composition always lies between two known bounds, so once M maps
+ * both bounds to numbers with the same next digit that digit is final. It is
+ * emitted and removed from M, and otherwise another term is consumed.<br />
+ * <br />
+ * The first digit is the integer part, so &pi; starts 3, 1, 4, 1, 5. Only the
+ * three integers of M are kept; they grow by a few bits with every digit, so
+ * producing n digits takes O(n) memory and O(n^2) time. The state can be saved
+ * as a {@link Checkpoint} at any point and resumed later, even in another
+ * process. This class is not thread-safe.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public class DigitSpigot implements PrimitiveIterator.OfInt {
+
+    private final Constant constant;
+    private BigInteger q;
+    private BigInteger r;
+    private BigInteger t;
+    private long k;
+    private long position;
+
+    private DigitSpigot(Constant constant, BigInteger q, BigInteger r, BigInteger t, long k, long position) {
+	this.constant = constant;
+	this.q = q;
+	this.r = r;
+	this.t = t;
+	this.k = k;
+	this.position = position;
+    }
+
+    /**
+     * Creates a spigot for the digits of &pi;.
+     * 
+     * @return The spigot
+     */
+    public static DigitSpigot pi() {
+	return new DigitSpigot(Constant.PI, BigInteger.ONE, BigInteger.ZERO, BigInteger.ONE, 1, 0);
+    }
+
+    /**
+     * Creates a spigot for the digits of e.
+     * 
+     * @return The spigot
+     */
+    public static DigitSpigot e() {
+	return new DigitSpigot(Constant.E, BigInteger.ONE, BigInteger.ZERO, BigInteger.ONE, 1, 0);
+    }
+
+    /**
+     * Creates a spigot that continues where a checkpoint was taken.
+     * 
+     * @param checkpoint
+     *            The checkpoint
+     * @return The spigot, whose next digit is the one after the checkpoint
+     */
+    public static DigitSpigot resume(Checkpoint checkpoint) {
+	return new DigitSpigot(checkpoint.constant, checkpoint.q, checkpoint.r, checkpoint.t, checkpoint.k,
+		checkpoint.position);
+    }
+
+    /**
+     * There is always another digit.
+     * 
+     * @return true
+     */
+    @Override
+    public boolean hasNext() {
+	return true;
+    }
+
+    @Override
+    public int nextInt() {
+	while (true) {
+	    BigInteger low = q.multiply(constant.lower).add(r).divide(t);
+	    BigInteger high = q.multiply(constant.upper).add(r).divide(t);
+	    if (low.equals(high)) {
+		q = q.multiply(BigInteger.TEN);
+		r = r.subtract(low.multiply(t)).multiply(BigInteger.TEN);
+		position++;
+		return low.intValue();
+	    }
+	    constant.consume(this);
+	    k++;
+	}
+    }
+
+    /**
+     * Gets the number of digits produced so far, counting the integer part as
+     * one digit.
+     * 
+     * @return The number of digits
+     */
+    public long getPosition() {
+	return position;
+    }
+
+    /**
+     * Saves the state of this spigot.
+     * 
+     * @return The checkpoint
+     */
+    public Checkpoint checkpoint() {
+	return new Checkpoint(constant, q, r, t, k, position);
+    }
+
+    /**
+     * Creates an infinite stream of the remaining digits, which takes its digits
+     * from this spigot.
+     * 
+     * @return The stream
+     */
+    public IntStream stream() {
+	return StreamSupport.intStream(
+		Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * The constants that have a spigot, with the bounds of the unconsumed part of
+     * their composition and the next term.
+     */
+    private enum Constant {
+
+	PI(3, 4) {
+	    /**
+	     * Multiplies in x -> (k*x+4k+2)/(2k+1).
+	     */
+	    @Override
+	    void consume(DigitSpigot s) {
+		BigInteger denominator = BigInteger.valueOf(2 * s.k + 1);
+		s.r = s.q.multiply(BigInteger.valueOf(4 * s.k + 2)).add(s.r.multiply(denominator));
+		s.q = s.q.multiply(BigInteger.valueOf(s.k));
+		s.t = s.t.multiply(denominator);
+	    }
+	},
+	E(1, 2) {
+	    /**
+	     * Multiplies in x -> (x+k)/k.
+	     */
+	    @Override
+	    void consume(DigitSpigot s) {
+		BigInteger k = BigInteger.valueOf(s.k);
+		s.r = s.q.add(s.r).multiply(k);
+		s.t = s.t.multiply(k);
+	    }
+	};
+
+	final BigInteger lower;
+	final BigInteger upper;
+
+	private Constant(int lower, int upper) {
+	    this.lower = BigInteger.valueOf(lower);
+	    this.upper = BigInteger.valueOf(upper);
+	}
+
+	/**
+	 * Multiplies term k into the transformation of the spigot.
+	 */
+	abstract void consume(DigitSpigot s);
+
+    }
+
+    /**
+     * The saved state of a spigot, which can be serialized to resume the digits
+     * later.
+     */
+    public static final class Checkpoint implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Constant constant;
+	private final BigInteger q;
+	private final BigInteger r;
+	private final BigInteger t;
+	private final long k;
+	private final long position;
+
+	private Checkpoint(Constant constant, BigInteger q, BigInteger r, BigInteger t, long k, long position) {
+	    this.constant = constant;
+	    this.q = q;
+	    this.r = r;
+	    this.t = t;
+	    this.k = k;
+	    this.position = position;
+	}
+
+	/**
+	 * Gets the number of digits produced before the checkpoint was taken.
+	 * 
+	 * @return The number of digits
+	 */
+	public long getPosition() {
+	    return position;
+	}
+
+    }
+
+}
@@ -0,0 +1,331 @@
+package mathutils.math.bigdecimal;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the digits of a {@code BigDecimal} as plain text without building the
+ * whole string first. The unscaled value is converted to decimal by divide and
+ * conquer: it is split by a power of ten into a high and a low half, each half
+ * is converted recursively, and the halves are small enough to convert directly
+ * once they fit in a long. The digits are produced from left to right, so they
+ * are written out in small chunks as soon as they are known, and a limit on the
+ * number of characters stops the conversion early.<br />
+ * <br />
+ * The digits can be split into groups counted from the decimal point, and the
+ * output can be broken into lines of a fixed number of characters. Without
+ * grouping, line breaks or a limit the text is the same as
+ * {@link BigDecimal#toPlainString()}. This class is thread-safe.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public class DigitWriter {
+
+    /**
+     * The number of digits converted directly from a long.
+     */
+    private static final int LEAF_DIGITS = 18;
+
+    /**
+     * The number of characters buffered before they are written out.
+     */
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final long LEAF_POWER = 1000000000000000000L;
+
+    /**
+     * 10^(LEAF_DIGITS*2^k) at index k, extended as larger numbers are converted.
+     */
+    private static final List<BigInteger> POWERS = new ArrayList<BigInteger>();
+
+    private final int groupSize;
+    private final String groupSeparator;
+    private final int lineLength;
+
+    /**
+     * Creates a writer that writes the digits without grouping or line breaks.
+     */
+    public DigitWriter() {
+	this(0, "", 0);
+    }
+
+    /**
+     * Creates a writer that breaks the output into lines.
+     * 
+     * @param lineLength
+     *            The number of characters on each line, or 0 for a single line
+     */
+    public DigitWriter(int lineLength) {
+	this(0, "", lineLength);
+    }
+
+    /**
+     * Creates a writer that groups the digits and breaks the output into lines.
+     * Without grouping a line break is written after every lineLength
+     * characters. With grouping lines are only broken between groups, and a line
+     * break takes the place of the group separator once the next group would
+     * make the line longer than lineLength characters. The last line is also
+     * ended by a line break.
+     * 
+     * @param groupSize
+     *            The number of digits in each group, or 0 for no grouping
+     * @param groupSeparator
+     *            The text written between groups
+     * @param lineLength
+     *            The number of characters on each line, or 0 for a single line
+     * @throws IllegalArgumentException
+     *             if groupSize or lineLength is negative
+     */
+    public DigitWriter(int groupSize, String groupSeparator, int lineLength) {
+	if (groupSize < 0 || lineLength < 0) {
+	    throw new IllegalArgumentException("The group size and line length must not be negative");
+	}
+	this.groupSize = groupSize;
+	this.groupSeparator = groupSeparator;
+	this.lineLength = lineLength;
+    }
+
+    /**
+     * Writes all digits of a number.
+     * 
+     * @param d
+     *            The number
+     * @param out
+     *            The destination of the text
+     * @throws IOException
+     *             if the destination throws one
+     */
+    public void write(BigDecimal d, Appendable out) throws IOException {
+	write(d, out, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes at most the given number of characters of a number, not counting
+     * line breaks.
+     * 
+     * @param d
+     *            The number
+     * @param out
+     *            The destination of the text
+     * @param limit
+     *            The maximum number of characters
+     * @throws IOException
+     *             if the destination throws one
+     */
+    public void write(BigDecimal d, Appendable out, long limit) throws IOException {
+	new Output(out, null, limit).write(d);
+    }
+
+    /**
+     * Writes all digits of a number as UTF-8 text.
+     * 
+     * @param d
+     *            The number
+     * @param channel
+     *            The destination of the text
+     * @throws IOException
+     *             if writing to the channel fails
+     */
+    public void write(BigDecimal d, WritableByteChannel channel) throws IOException {
+	write(d, channel, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes at most the given number of characters of a number as UTF-8 text,
+     * not counting line breaks.
+     * 
+     * @param d
+     *            The number
+     * @param channel
+     *            The destination of the text
+     * @param limit
+     *            The maximum number of characters
+     * @throws IOException
+     *             if writing to the channel fails
+     */
+    public void write(BigDecimal d, WritableByteChannel channel, long limit) throws IOException {
+	new Output(null, channel, limit).write(d);
+    }
+
+    /**
+     * Gets 10^(LEAF_DIGITS*2^k).
+     */
+    private static BigInteger power(int k) {
+	synchronized (POWERS) {
+	    if (POWERS.isEmpty()) {
+		POWERS.add(BigInteger.valueOf(LEAF_POWER));
+	    }
+	    while (POWERS.size() <= k) {
+		BigInteger last = POWERS.get(POWERS.size() - 1);
+		POWERS.add(last.multiply(last));
+	    }
+	    return POWERS.get(k);
+	}
+    }
+
+    /**
+     * The state of writing one number: the position of the next digit, the
+     * current line and the buffered characters.
+     */
+    private class Output {
+
+	private final Appendable out;
+	private final WritableByteChannel channel;
+	private final char[] buffer = new char[CHUNK_SIZE];
+	private final char[] leaf = new char[LEAF_DIGITS];
+	private int buffered;
+	private long remaining;
+	private long column;
+	private long integerDigits;
+	private long integerWritten;
+	private long fractionDigits;
+
+	Output(Appendable out, WritableByteChannel channel, long limit) {
+	    this.out = out;
+	    this.channel = channel;
+	    this.remaining = limit;
+	}
+
+	void write(BigDecimal d) throws IOException {
+	    BigInteger unscaled = d.unscaledValue().abs();
+	    long digits = d.signum() == 0 ? 1 : d.precision();
+	    long scale = d.scale();
+	    if (d.signum() < 0) {
+		text('-');
+	    }
+	    if (scale >= digits) {
+		integerDigits = 1;
+		digit('0');
+		for (long i = digits; i < scale && remaining > 0; i++) {
+		    digit('0');
+		}
+	    } else {
+		integerDigits = digits - scale;
+	    }
+	    convert(unscaled, digits);
+	    for (long i = scale; i < 0 && remaining > 0; i++) {
+		digit('0');
+	    }
+	    if (lineLength > 0 && column > 0) {
+		lineBreak();
+	    }
+	    flush();
+	}
+
+	/**
+	 * Writes exactly the given number of digits of v, with leading zeros.
+	 */
+	private void convert(BigInteger v, long digits) throws IOException {
+	    if (remaining <= 0) {
+		return;
+	    }
+	    if (digits <= LEAF_DIGITS) {
+		long value = v.longValue();
+		for (int i = (int) digits - 1; i >= 0; i--) {
+		    leaf[i] = (char) ('0' + value % 10);
+		    value /= 10;
+		}
+		for (int i = 0; i < digits; i++) {
+		    digit(leaf[i]);
+		}
+		return;
+	    }
+	    int k = 0;
+	    long split = LEAF_DIGITS;
+	    while (2 * split < digits) {
+		split *= 2;
+		k++;
+	    }
+	    BigInteger[] halves = v.divideAndRemainder(power(k));
+	    convert(halves[0], digits - split);
+	    convert(halves[1], split);
+	}
+
+	/**
+	 * Writes one digit, preceded by the decimal point or a group separator if
+	 * one belongs before it.
+	 */
+	private void digit(char c) throws IOException {
+	    if (integerDigits > 0) {
+		if (groupSize > 0 && integerWritten > 0 && integerDigits % groupSize == 0) {
+		    separator();
+		}
+		integerDigits--;
+		integerWritten++;
+		text(c);
+		return;
+	    }
+	    if (fractionDigits == 0) {
+		text('.');
+	    } else if (groupSize > 0 && fractionDigits % groupSize == 0) {
+		separator();
+	    }
+	    fractionDigits++;
+	    text(c);
+	}
+
+	/**
+	 * Writes a group separator, or a line break instead if the next group would
+	 * not fit on the line.
+	 */
+	private void separator() throws IOException {
+	    if (lineLength > 0 && column + groupSeparator.length() + groupSize > lineLength) {
+		if (remaining > 0) {
+		    lineBreak();
+		}
+		return;
+	    }
+	    for (int i = 0; i < groupSeparator.length(); i++) {
+		text(groupSeparator.charAt(i));
+	    }
+	}
+
+	private void text(char c) throws IOException {
+	    if (remaining <= 0) {
+		return;
+	    }
+	    if (buffered == buffer.length) {
+		flush();
+	    }
+	    buffer[buffered++] = c;
+	    remaining--;
+	    column++;
+	    if (lineLength > 0 && groupSize == 0 && column == lineLength) {
+		lineBreak();
+	    }
+	}
+
+	private void lineBreak() throws IOException {
+	    String separator = System.lineSeparator();
+	    for (int i = 0; i < separator.length(); i++) {
+		if (buffered == buffer.length) {
+		    flush();
+		}
+		buffer[buffered++] = separator.charAt(i);
+	    }
+	    column = 0;
+	}
+
+	private void flush() throws IOException {
+	    if (out != null) {
+		out.append(CharBuffer.wrap(buffer, 0, buffered));
+	    } else {
+		ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(buffer, 0, buffered));
+		while (bytes.hasRemaining()) {
+		    channel.write(bytes);
+		}
+	    }
+	    buffered = 0;
+	}
+
+    }
+
+}
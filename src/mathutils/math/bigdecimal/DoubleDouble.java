@@ -0,0 +1,234 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+
+/**
+ * A number stored as the unevaluated sum of two doubles, which gives about 32
+ * significant digits while every operation is still a handful of double
+ * operations. The sums and products use the error-free transformations of
+ * Knuth and Dekker, so the error of each operation is a few units of 2^-106
+ * relative to its result. Only the functions needed by {@link FastPath} are
+ * provided, for arguments of moderate size.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+final class DoubleDouble {
+
+    /**
+     * 2^27+1, used to split a double into two halves whose products are exact.
+     */
+    private static final double SPLITTER = 134217729.0;
+
+    private static final DoubleDouble ONE = new DoubleDouble(1, 0);
+    private static final DoubleDouble LN2 = new DoubleDouble(0.6931471805599453, 2.3190468138462996e-17);
+
+    /**
+     * &pi;/2 split into three doubles, so that k*&pi;/2 can be subtracted from an
+     * argument without losing digits.
+     */
+    private static final double[] HALF_PI = { 1.5707963267948966, 6.123233995736766e-17,
+	    -1.4973849048591698e-33 };
+
+    /**
+     * The number of times the argument of exp is halved before the series is
+     * summed.
+     */
+    private static final int EXP_HALVINGS = 8;
+    private static final int EXP_TERMS = 12;
+    private static final int SIN_TERMS = 15;
+
+    /**
+     * Powers of ten that are exact as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    final double hi;
+    final double lo;
+
+    DoubleDouble(double hi, double lo) {
+	this.hi = hi;
+	this.lo = lo;
+    }
+
+    /**
+     * Converts a {@code BigDecimal} to a double-double whose error is at most a
+     * unit in the last place of the low part. A number with at most 15 digits and
+     * a scale of at most 22 is converted with double arithmetic, which avoids
+     * creating any {@code BigDecimal}.
+     * 
+     * @param x
+     *            The number
+     * @return The double-double, whose parts are infinite if x is out of range.
+     *         The low part is zero only if x is equal to the high part.
+     */
+    static DoubleDouble valueOf(BigDecimal x) {
+	int scale = x.scale();
+	if (x.precision() <= 15 && scale >= 0 && scale < POWERS_OF_TEN.length) {
+	    double unscaled = x.unscaledValue().longValue();
+	    double power = POWERS_OF_TEN[scale];
+	    double hi = unscaled / power;
+	    DoubleDouble residual = new DoubleDouble(unscaled, 0).subtract(product(hi, power));
+	    return new DoubleDouble(hi, residual.hi / power);
+	}
+	double hi = x.doubleValue();
+	if (Double.isInfinite(hi)) {
+	    return new DoubleDouble(hi, 0);
+	}
+	BigDecimal difference = x.subtract(new BigDecimal(hi));
+	double lo = difference.doubleValue();
+	if (lo == 0 && difference.signum() != 0) {
+	    lo = Math.copySign(Double.MIN_VALUE, difference.signum());
+	}
+	return new DoubleDouble(hi, lo);
+    }
+
+    DoubleDouble add(DoubleDouble b) {
+	double s = hi + b.hi;
+	double v = s - hi;
+	double e = (hi - (s - v)) + (b.hi - v);
+	double t = lo + b.lo;
+	double w = t - lo;
+	double f = (lo - (t - w)) + (b.lo - w);
+	e += t;
+	double u = s + e;
+	e = e - (u - s);
+	e += f;
+	return quickSum(u, e);
+    }
+
+    DoubleDouble subtract(DoubleDouble b) {
+	return add(b.negate());
+    }
+
+    DoubleDouble negate() {
+	return new DoubleDouble(-hi, -lo);
+    }
+
+    DoubleDouble multiply(DoubleDouble b) {
+	DoubleDouble p = product(hi, b.hi);
+	return quickSum(p.hi, p.lo + (hi * b.lo + lo * b.hi));
+    }
+
+    DoubleDouble divide(DoubleDouble b) {
+	double q1 = hi / b.hi;
+	DoubleDouble r = subtract(b.multiply(new DoubleDouble(q1, 0)));
+	double q2 = r.hi / b.hi;
+	r = r.subtract(b.multiply(new DoubleDouble(q2, 0)));
+	double q3 = r.hi / b.hi;
+	return quickSum(q1, q2).add(new DoubleDouble(q3, 0));
+    }
+
+    DoubleDouble divide(double b) {
+	double q1 = hi / b;
+	DoubleDouble p = product(q1, b);
+	double q2 = (((hi - p.hi) - p.lo) + lo) / b;
+	return quickSum(q1, q2);
+    }
+
+    /**
+     * Multiplies this number by 2^n, which is exact unless the result leaves the
+     * range of a double.
+     */
+    DoubleDouble scalb(int n) {
+	return new DoubleDouble(Math.scalb(hi, n), Math.scalb(lo, n));
+    }
+
+    /**
+     * Computes e^x. The argument is reduced by a multiple of ln(2) and halved
+     * {@value #EXP_HALVINGS} times, and the series is summed for e^r-1, which
+     * keeps its relative accuracy through the squarings that undo the halving.
+     * 
+     * @return e^x, whose parts are infinite or zero if the result is out of
+     *         range
+     */
+    static DoubleDouble exp(DoubleDouble x) {
+	if (Math.abs(x.hi) > 708) {
+	    return new DoubleDouble(x.hi > 0 ? Double.POSITIVE_INFINITY : 0, 0);
+	}
+	double k = Math.rint(x.hi / LN2.hi);
+	DoubleDouble r = x.subtract(LN2.multiply(new DoubleDouble(k, 0))).scalb(-EXP_HALVINGS);
+	DoubleDouble m = r;
+	for (int n = EXP_TERMS; n > 1; n--) {
+	    m = r.add(r.multiply(m).divide(n));
+	}
+	for (int i = 0; i < EXP_HALVINGS; i++) {
+	    m = m.scalb(1).add(m.multiply(m));
+	}
+	return ONE.add(m).scalb((int) k);
+    }
+
+    /**
+     * Computes ln(x) for x > 0 with one Newton step y=y+x*e^-y-1 from the double
+     * logarithm, which doubles the number of correct digits.
+     */
+    static DoubleDouble ln(DoubleDouble x) {
+	DoubleDouble y = new DoubleDouble(Math.log(x.hi), 0);
+	return y.add(x.multiply(exp(y.negate()))).subtract(ONE);
+    }
+
+    /**
+     * Computes sqrt(x) for x > 0 with one Newton step from the double square root.
+     */
+    static DoubleDouble sqrt(DoubleDouble x) {
+	double y = Math.sqrt(x.hi);
+	DoubleDouble residual = x.subtract(product(y, y));
+	return quickSum(y, residual.hi / (2 * y));
+    }
+
+    /**
+     * Computes sin(x) and cos(x). The argument is reduced modulo &pi;/2 with the
+     * three part constant, so the reduced argument keeps its relative accuracy
+     * for any |x| that {@link FastPath} allows, and both series are summed for
+     * |r| <= &pi;/4.
+     * 
+     * @return An array holding sin(x) and cos(x)
+     */
+    static DoubleDouble[] sinCos(DoubleDouble x) {
+	double k = Math.rint(x.hi / HALF_PI[0]);
+	DoubleDouble r = x.subtract(product(k, HALF_PI[0])).subtract(product(k, HALF_PI[1]))
+		.subtract(new DoubleDouble(k * HALF_PI[2], 0));
+	DoubleDouble square = r.multiply(r);
+	DoubleDouble sin = ONE;
+	DoubleDouble cos = ONE;
+	for (int n = SIN_TERMS; n > 0; n--) {
+	    sin = ONE.subtract(square.multiply(sin).divide((2.0 * n) * (2 * n + 1)));
+	    cos = ONE.subtract(square.multiply(cos).divide((2.0 * n - 1) * (2 * n)));
+	}
+	sin = sin.multiply(r);
+	switch ((int) (((long) k) & 3)) {
+	case 1:
+	    return new DoubleDouble[] { cos, sin.negate() };
+	case 2:
+	    return new DoubleDouble[] { sin.negate(), cos.negate() };
+	case 3:
+	    return new DoubleDouble[] { cos.negate(), sin };
+	default:
+	    return new DoubleDouble[] { sin, cos };
+	}
+    }
+
+    /**
+     * Computes a+b for |a| >= |b| as a double-double.
+     */
+    private static DoubleDouble quickSum(double a, double b) {
+	double s = a + b;
+	return new DoubleDouble(s, b - (s - a));
+    }
+
+    /**
+     * Computes a*b exactly as a double-double.
+     */
+    private static DoubleDouble product(double a, double b) {
+	double p = a * b;
+	double t = SPLITTER * a;
+	double aHi = t - (t - a);
+	double aLo = a - aHi;
+	t = SPLITTER * b;
+	double bHi = t - (t - b);
+	double bLo = b - bHi;
+	return new DoubleDouble(p, ((aHi * bHi - p) + aHi * bLo + aLo * bHi) + aLo * bLo);
+    }
+
+}
@@ -0,0 +1,261 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+
+import mathutils.math.context.ComputeContext;
+
+/**
+ * Computes factorials, double factorials and binomial coefficients with exact
+ * {@code BigInteger} arithmetic. Factorials use the prime swing algorithm,
+ * where n!=((n/2)!)^2*swing(n) and swing(n) is a product of prime powers that
+ * can be read directly from the digits of n in each prime base. All long
+ * products are multiplied as balanced product trees so that the numbers being
+ * multiplied are always of similar size. The halves of large product trees,
+ * and swing(n) and (n/2)!, can be computed in parallel. The most recently
+ * computed factorials are kept in a small cache.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+class Factorials {
+
+    /**
+     * The number of factorials kept in the cache.
+     */
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * Below this size factorials are computed directly as a product tree.
+     */
+    private static final int SWING_THRESHOLD = 80;
+
+    /**
+     * Products of at most this many factors are multiplied in a simple loop.
+     */
+    private static final int LEAF_SIZE = 16;
+
+    /**
+     * Products of at least this many factors are split between threads.
+     */
+    private static final int PARALLEL_SIZE = 1024;
+
+    private static final Map<Integer, BigInteger> CACHE = Collections
+	    .synchronizedMap(new LinkedHashMap<Integer, BigInteger>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, BigInteger> eldest) {
+		    return size() > CACHE_SIZE;
+		}
+	    });
+
+    private Factorials() {
+
+    }
+
+    /**
+     * Computes n!.
+     * 
+     * @param n
+     *            The number, which must not be negative
+     * @return n!
+     */
+    static BigInteger factorial(int n) {
+	return factorial(n, false, BigDecimalMath.DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Computes n! with the threads of the given context.
+     * 
+     * @param n
+     *            The number, which must not be negative
+     * @param cc
+     *            The context that gives the threads, deadline and cancellation
+     *            token of the computation
+     * @return n!
+     */
+    static BigInteger factorial(int n, ComputeContext cc) {
+	int threads = cc.getThreads();
+	return Parallel.invoke(threads, () -> factorial(n, threads > 1, cc));
+    }
+
+    /**
+     * Computes n!. If parallel is true, swing(n) is computed at the same time as
+     * (n/2)!.
+     */
+    private static BigInteger factorial(int n, boolean parallel, ComputeContext cc) {
+	if (n < SWING_THRESHOLD) {
+	    return product(2, n, 1, false);
+	}
+	BigInteger result = CACHE.get(n);
+	if (result == null) {
+	    ForkJoinTask<BigInteger> swingTask = parallel && n >= PARALLEL_SIZE
+		    ? Parallel.fork(() -> swing(n, true, cc))
+		    : null;
+	    BigInteger half = factorial(n / 2, parallel, cc);
+	    BigInteger swing = swingTask == null ? swing(n, false, cc) : swingTask.join();
+	    result = half.multiply(half).multiply(swing);
+	    CACHE.put(n, result);
+	}
+	return result;
+    }
+
+    /**
+     * Computes n!!, which is the product of all numbers between 1 and n that have
+     * the same parity as n. n!! is 1 for n <= 0.
+     * 
+     * @param n
+     *            The number
+     * @return n!!
+     */
+    static BigInteger doubleFactorial(int n) {
+	if (n <= 0) {
+	    return BigInteger.ONE;
+	}
+	if (n % 2 == 0) {
+	    return factorial(n / 2).shiftLeft(n / 2);
+	}
+	return product(3, n, 2, false);
+    }
+
+    /**
+     * Computes the binomial coefficient n choose k from its prime factorization.
+     * The exponent of each prime p is the number of carries when adding k and
+     * n-k in base p.
+     * 
+     * @param n
+     *            The number of items, which must not be negative
+     * @param k
+     *            The number of items chosen
+     * @return n choose k, or 0 if k < 0 or k > n
+     */
+    static BigInteger binomial(int n, int k) {
+	if (k < 0 || k > n) {
+	    return BigInteger.ZERO;
+	}
+	k = Math.min(k, n - k);
+	if (k < LEAF_SIZE) {
+	    BigInteger result = BigInteger.ONE;
+	    for (int i = 1; i <= k; i++) {
+		result = result.multiply(BigInteger.valueOf(n - k + i)).divide(BigInteger.valueOf(i));
+	    }
+	    return result;
+	}
+	BitSet primes = sieve(n);
+	long[] factors = new long[primes.cardinality()];
+	int count = 0;
+	for (int p = primes.nextSetBit(2); p >= 0; p = primes.nextSetBit(p + 1)) {
+	    long factor = 1;
+	    for (long power = p; power <= n; power *= p) {
+		if (n / power - k / power - (n - k) / power > 0) {
+		    factor *= p;
+		}
+	    }
+	    if (factor > 1) {
+		factors[count++] = factor;
+	    }
+	}
+	return product(factors, 0, count, false, BigDecimalMath.DEFAULT_CONTEXT);
+    }
+
+    /**
+     * Computes swing(n)=n!/((n/2)!)^2. The exponent of each prime p in swing(n)
+     * is the number of odd values among n/p, n/p^2, ... using integer division.
+     */
+    private static BigInteger swing(int n, boolean parallel, ComputeContext cc) {
+	BitSet primes = sieve(n);
+	long[] factors = new long[primes.cardinality()];
+	int count = 0;
+	for (int p = primes.nextSetBit(2); p >= 0; p = primes.nextSetBit(p + 1)) {
+	    long factor = 1;
+	    for (int q = n / p; q > 0; q /= p) {
+		if ((q & 1) == 1) {
+		    factor *= p;
+		}
+	    }
+	    if (factor > 1) {
+		factors[count++] = factor;
+	    }
+	}
+	return product(factors, 0, count, parallel, cc);
+    }
+
+    /**
+     * Multiplies the numbers from, from+step, from+2*step, ... up to and
+     * including to as a balanced product tree.
+     * 
+     * @param from
+     *            The first factor
+     * @param to
+     *            The largest factor that may be included
+     * @param step
+     *            The difference between consecutive factors
+     * @param parallel
+     *            Whether large products should fork their halves, which is only
+     *            allowed inside {@link Parallel#invoke}
+     * @return The product, or 1 if there are no factors
+     */
+    static BigInteger product(long from, long to, int step, boolean parallel) {
+	if (from > to) {
+	    return BigInteger.ONE;
+	}
+	long count = (to - from) / step + 1;
+	if (count <= LEAF_SIZE) {
+	    BigInteger result = BigInteger.valueOf(from);
+	    for (long i = from + step; i <= to; i += step) {
+		result = result.multiply(BigInteger.valueOf(i));
+	    }
+	    return result;
+	}
+	long middle = from + count / 2 * step;
+	if (parallel && count >= PARALLEL_SIZE) {
+	    ForkJoinTask<BigInteger> left = Parallel.fork(() -> product(from, middle - step, step, true));
+	    BigInteger right = product(middle, to, step, true);
+	    return left.join().multiply(right);
+	}
+	return product(from, middle - step, step, false).multiply(product(middle, to, step, false));
+    }
+
+    /**
+     * Multiplies factors[from] through factors[to-1] together as a balanced
+     * product tree. If parallel is true, large products fork their left half.
+     * Every product that is split checks whether the computation is cancelled.
+     */
+    private static BigInteger product(long[] factors, int from, int to, boolean parallel, ComputeContext cc) {
+	if (to - from <= LEAF_SIZE) {
+	    BigInteger result = BigInteger.ONE;
+	    for (int i = from; i < to; i++) {
+		result = result.multiply(BigInteger.valueOf(factors[i]));
+	    }
+	    return result;
+	}
+	cc.checkCancelled();
+	int middle = (from + to) >>> 1;
+	if (parallel && to - from >= PARALLEL_SIZE) {
+	    ForkJoinTask<BigInteger> left = Parallel.fork(() -> product(factors, from, middle, true, cc));
+	    BigInteger right = product(factors, middle, to, true, cc);
+	    return left.join().multiply(right);
+	}
+	return product(factors, from, middle, false, cc).multiply(product(factors, middle, to, false, cc));
+    }
+
+    /**
+     * Finds the primes up to and including n with the sieve of Eratosthenes.
+     */
+    private static BitSet sieve(int n) {
+	BitSet primes = new BitSet(n + 1);
+	primes.set(2, n + 1);
+	for (int p = 2; (long) p * p <= n; p = primes.nextSetBit(p + 1)) {
+	    for (int multiple = p * p; multiple <= n; multiple += p) {
+		primes.clear(multiple);
+	    }
+	}
+	return primes;
+    }
+
+}
@@ -0,0 +1,271 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import mathutils.math.context.ComputeContext;
+
+/**
+ * Computes functions at low precisions with hardware arithmetic instead of
+ * {@code BigDecimal}. Up to {@value #DOUBLE_DIGITS} digits the function is
+ * computed by {@code StrictMath}, and up to {@value #DOUBLE_DOUBLE_DIGITS}
+ * digits, or when a double is not accurate enough, some functions are computed
+ * with {@link DoubleDouble}.<br />
+ * <br />
+ * Every result comes with a bound on its error, made of the documented error of
+ * the kernel and the error of converting the argument, scaled by the derivative
+ * of the function. The result is only used if both ends of that interval round
+ * to the same number, which is then the correctly rounded result. Otherwise,
+ * for example when the result lies too close to halfway between two numbers or
+ * the function is badly conditioned at the argument, null is returned and the
+ * caller computes with {@code BigDecimal} as usual.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+class FastPath {
+
+    /**
+     * The highest precision computed with doubles.
+     */
+    static final int DOUBLE_DIGITS = 14;
+
+    /**
+     * The highest precision computed with double-doubles.
+     */
+    static final int DOUBLE_DOUBLE_DIGITS = 30;
+
+    /**
+     * The error of the {@code StrictMath} functions in units in the last place.
+     * The specification allows up to 2.5 for the hyperbolic functions and 1 for
+     * the others; log2 adds one more rounding for its division.
+     */
+    private static final double DOUBLE_ERROR = 4;
+
+    /**
+     * A bound on the relative error of the double-double kernels, or on the
+     * absolute error for sin and cos.
+     */
+    private static final double DOUBLE_DOUBLE_ERROR = 1e-30;
+
+    /**
+     * Arguments of sin, cos and tan with a larger magnitude are not reduced with
+     * double-doubles.
+     */
+    private static final double MAX_ANGLE = 1e6;
+
+    /**
+     * Scales every error bound up before it is converted to decimal.
+     */
+    private static final double ERROR_MARGIN = 1.01;
+
+    private static final double LN10 = Math.log(10);
+    private static final double LN2 = Math.log(2);
+
+    private FastPath() {
+
+    }
+
+    /**
+     * Computes a function with hardware arithmetic if the precision of the
+     * context is low enough and the result can be proven to be correctly
+     * rounded.
+     * 
+     * @param function
+     *            The function
+     * @param x
+     *            The argument
+     * @param cc
+     *            The context to use in calculation
+     * @return The value of the function at x with the result precision of the
+     *         context, or null if it must be computed with {@code BigDecimal}
+     */
+    static BigDecimal evaluate(MathFunction function, BigDecimal x, ComputeContext cc) {
+	int precision = cc.getResultPrecision();
+	if (precision > DOUBLE_DOUBLE_DIGITS || x.signum() == 0) {
+	    return null;
+	}
+	MathContext mc = cc.getAsMathContext();
+	if (mc.getRoundingMode() == null || mc.getRoundingMode() == RoundingMode.UNNECESSARY) {
+	    return null;
+	}
+	DoubleDouble xdd = DoubleDouble.valueOf(x);
+	if (Double.isInfinite(xdd.hi)) {
+	    return null;
+	}
+	BigDecimal result = precision <= DOUBLE_DIGITS ? evaluateDouble(function, xdd, mc) : null;
+	if (result == null) {
+	    result = evaluateDoubleDouble(function, xdd, mc);
+	}
+	if (result != null) {
+	    cc.setTermsUsed(0);
+	}
+	return result;
+    }
+
+    private static BigDecimal evaluateDouble(MathFunction function, DoubleDouble x, MathContext mc) {
+	double xd = x.hi;
+	double y;
+	double derivative;
+	switch (function) {
+	case SIN:
+	    y = StrictMath.sin(xd);
+	    derivative = StrictMath.cos(xd);
+	    break;
+	case COS:
+	    y = StrictMath.cos(xd);
+	    derivative = StrictMath.sin(xd);
+	    break;
+	case TAN:
+	    y = StrictMath.tan(xd);
+	    derivative = 1 + y * y;
+	    break;
+	case ARCSIN:
+	    y = StrictMath.asin(xd);
+	    derivative = 1 / Math.sqrt((1 - xd) * (1 + xd));
+	    break;
+	case ARCCOS:
+	    y = StrictMath.acos(xd);
+	    derivative = 1 / Math.sqrt((1 - xd) * (1 + xd));
+	    break;
+	case ARCTAN:
+	    y = StrictMath.atan(xd);
+	    derivative = 1 / (1 + xd * xd);
+	    break;
+	case SINH:
+	    y = StrictMath.sinh(xd);
+	    derivative = StrictMath.cosh(xd);
+	    break;
+	case COSH:
+	    y = StrictMath.cosh(xd);
+	    derivative = StrictMath.sinh(xd);
+	    break;
+	case TANH:
+	    y = StrictMath.tanh(xd);
+	    if (Math.abs(y) == 1) {
+		// tanh computes this exactly
+		return null;
+	    }
+	    derivative = 1 - y * y;
+	    break;
+	case EXP:
+	    y = StrictMath.exp(xd);
+	    derivative = y;
+	    break;
+	case LN:
+	    y = StrictMath.log(xd);
+	    derivative = 1 / xd;
+	    break;
+	case LOG10:
+	    y = StrictMath.log10(xd);
+	    derivative = 1 / (xd * LN10);
+	    break;
+	case LOG2:
+	    y = StrictMath.log(xd) / LN2;
+	    derivative = 1 / (xd * LN2);
+	    break;
+	case SQRT:
+	    y = StrictMath.sqrt(xd);
+	    derivative = 0.5 / y;
+	    break;
+	default:
+	    return null;
+	}
+	if (!isNormal(y)) {
+	    return null;
+	}
+	double error = DOUBLE_ERROR * Math.ulp(y) + conversionError(x, Math.abs(x.lo), derivative);
+	return round(BigDecimal.valueOf(y), error + Math.ulp(y), mc);
+    }
+
+    private static BigDecimal evaluateDoubleDouble(MathFunction function, DoubleDouble xdd, MathContext mc) {
+	DoubleDouble y;
+	double derivative;
+	double error;
+	switch (function) {
+	case SIN:
+	case COS:
+	case TAN:
+	    if (Math.abs(xdd.hi) > MAX_ANGLE) {
+		return null;
+	    }
+	    DoubleDouble[] sinCos = DoubleDouble.sinCos(xdd);
+	    if (function == MathFunction.TAN) {
+		y = sinCos[0].divide(sinCos[1]);
+		derivative = 1 + y.hi * y.hi;
+		error = 2 * DOUBLE_DOUBLE_ERROR * derivative;
+	    } else {
+		y = function == MathFunction.SIN ? sinCos[0] : sinCos[1];
+		derivative = function == MathFunction.SIN ? sinCos[1].hi : sinCos[0].hi;
+		error = DOUBLE_DOUBLE_ERROR;
+	    }
+	    break;
+	case EXP:
+	    y = DoubleDouble.exp(xdd);
+	    derivative = y.hi;
+	    error = DOUBLE_DOUBLE_ERROR * Math.abs(y.hi);
+	    break;
+	case LN:
+	    if (xdd.hi <= 0) {
+		return null;
+	    }
+	    y = DoubleDouble.ln(xdd);
+	    derivative = 1 / xdd.hi;
+	    error = DOUBLE_DOUBLE_ERROR * Math.max(1, Math.abs(y.hi));
+	    break;
+	case SQRT:
+	    if (xdd.hi <= 0) {
+		return null;
+	    }
+	    y = DoubleDouble.sqrt(xdd);
+	    derivative = 0.5 / y.hi;
+	    error = DOUBLE_DOUBLE_ERROR * y.hi;
+	    break;
+	default:
+	    return null;
+	}
+	if (!isNormal(y.hi)) {
+	    return null;
+	}
+	error += conversionError(xdd, Math.abs(xdd.hi) * 0x1p-104, derivative);
+	return round(new BigDecimal(y.hi).add(BigDecimal.valueOf(y.lo)), error + Math.ulp(y.lo), mc);
+    }
+
+    /**
+     * Checks that a result is finite and large enough that it has not lost
+     * digits to underflow.
+     */
+    private static boolean isNormal(double y) {
+	return !Double.isNaN(y) && !Double.isInfinite(y) && Math.abs(y) >= Double.MIN_NORMAL;
+    }
+
+    /**
+     * Bounds the error that converting the argument to binary adds to the result,
+     * given a bound on the conversion error. The derivative is doubled to cover
+     * its change between the two arguments.
+     */
+    private static double conversionError(DoubleDouble x, double difference, double derivative) {
+	return x.lo == 0 ? 0 : 2 * difference * Math.abs(derivative);
+    }
+
+    /**
+     * Rounds y if every number within the error of it rounds to the same value.
+     * The result is padded with zeros to the full precision, like the results
+     * computed with {@code BigDecimal}.
+     */
+    private static BigDecimal round(BigDecimal y, double error, MathContext mc) {
+	if (Double.isNaN(error) || Double.isInfinite(error)) {
+	    return null;
+	}
+	// valueOf may give slightly less than the error, so it is raised by a margin
+	BigDecimal bound = BigDecimal.valueOf(error * ERROR_MARGIN);
+	BigDecimal lower = y.subtract(bound).round(mc);
+	BigDecimal upper = y.add(bound).round(mc);
+	if (lower.compareTo(upper) != 0) {
+	    return null;
+	}
+	return upper.setScale(upper.scale() + mc.getPrecision() - upper.precision());
+    }
+
+}
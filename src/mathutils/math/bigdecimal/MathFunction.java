@@ -0,0 +1,106 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.function.BiFunction;
+
+import mathutils.math.context.ComputeContext;
+
+/**
+ * The functions of one argument in {@link BigDecimalMath}. Besides calling a
+ * function by name, this allows the result to be computed together with a
+ * bound on its error.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public enum MathFunction {
+
+    SIN(BigDecimalMath::sin),
+    COS(BigDecimalMath::cos),
+    TAN(BigDecimalMath::tan),
+    ARCSIN(BigDecimalMath::arcsin),
+    ARCCOS(BigDecimalMath::arccos),
+    ARCTAN(BigDecimalMath::arctan),
+    SINH(BigDecimalMath::sinh),
+    COSH(BigDecimalMath::cosh),
+    TANH(BigDecimalMath::tanh),
+    EXP(BigDecimalMath::exp),
+    LN(BigDecimalMath::ln),
+    LOG10(BigDecimalMath::log10),
+    LOG2(BigDecimalMath::log2),
+    SQRT(BigDecimalMath::sqrt),
+    GAMMA(BigDecimalMath::gamma),
+    LN_GAMMA(BigDecimalMath::lnGamma);
+
+    /**
+     * The number of digits beyond the result precision that the function is
+     * evaluated with when an error bound is requested.
+     */
+    private static final int CHECK_DIGITS = 10;
+
+    /**
+     * The precision of the radius of a ball, which is always rounded up.
+     */
+    private static final MathContext RADIUS_MC = new MathContext(2, RoundingMode.UP);
+
+    private final BiFunction<BigDecimal, ComputeContext, BigDecimal> function;
+
+    private MathFunction(BiFunction<BigDecimal, ComputeContext, BigDecimal> function) {
+	this.function = function;
+    }
+
+    /**
+     * Computes the function, rounded to the result precision of the context.
+     * 
+     * @param x
+     *            The argument
+     * @param cc
+     *            The context to use in calculation
+     * @return The value of the function at x
+     * @throws ArithmeticException
+     *             if the function is not defined at x
+     * @see ComputeContext#getResultPrecision()
+     */
+    public BigDecimal apply(BigDecimal x, ComputeContext cc) {
+	return function.apply(x, cc);
+    }
+
+    /**
+     * Computes the function together with a bound on the error of the result.
+     * The function is evaluated twice, with 10 and with 20 digits beyond the
+     * result precision, and the more precise value is rounded to the result
+     * precision to give the midpoint. The radius is the sum of the rounding
+     * error, the difference between the two evaluations, and one unit in the
+     * last place of the more precise one, which is the error every function in
+     * {@link BigDecimalMath} stays within. A disagreement between the
+     * evaluations, for example from cancellation the guard digits did not cover,
+     * therefore widens the ball instead of going unnoticed. Results that are
+     * exactly zero are exact.
+     * 
+     * @param x
+     *            The argument, which is taken to be exact
+     * @param cc
+     *            The context to use in calculation
+     * @return A ball that contains the value of the function at x
+     * @throws ArithmeticException
+     *             if the function is not defined at x
+     */
+    public BigDecimalBall ball(BigDecimal x, ComputeContext cc) {
+	int precision = cc.getResultPrecision();
+	BigDecimal low = function.apply(x, cc.withPrecision(precision + CHECK_DIGITS));
+	ComputeContext work = cc.withPrecision(precision + 2 * CHECK_DIGITS);
+	BigDecimal high = function.apply(x, work);
+	cc.setTermsUsed(work.getTermsUsed());
+	BigDecimal midpoint = high.round(cc.getAsMathContext());
+	if (high.signum() == 0) {
+	    return new BigDecimalBall(midpoint, BigDecimal.ZERO);
+	}
+	int exponent = high.precision() - high.scale();
+	BigDecimal ulp = BigDecimal.ONE.scaleByPowerOfTen(exponent - work.getResultPrecision());
+	BigDecimal radius = midpoint.subtract(high).abs().add(low.subtract(high).abs()).add(ulp);
+	return new BigDecimalBall(midpoint, radius.round(RADIUS_MC));
+    }
+
+}
@@ -0,0 +1,118 @@
+package mathutils.math.bigdecimal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent parts of a computation on a {@code ForkJoinPool}. One pool
+ * is created for each number of threads that is requested, and it is reused by
+ * every later computation with the same number of threads. Only exact
+ * integer work is split between threads, so a parallel result is always the
+ * same as the sequential one.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+class Parallel {
+
+    /**
+     * The number of pieces each thread's share of the work is split into, so
+     * that threads which finish early can take work from slower ones.
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+    private Parallel() {
+
+    }
+
+    /**
+     * Gets the pool with the given number of threads, creating it if needed.
+     * 
+     * @param threads
+     *            The number of threads, which must be positive
+     * @return The pool
+     */
+    static ForkJoinPool pool(int threads) {
+	return POOLS.computeIfAbsent(threads, ForkJoinPool::new);
+    }
+
+    /**
+     * Calls the action for every index from 0 to count-1. If more than one thread
+     * is requested, the indices are split into ranges that run in parallel, and
+     * this method returns once all of them are done. Otherwise the indices are
+     * visited in order on the calling thread.
+     * 
+     * @param count
+     *            The number of indices
+     * @param threads
+     *            The number of threads to use
+     * @param action
+     *            The action, which must be safe to call from several threads at
+     *            once
+     */
+    static void forEach(int count, int threads, IntConsumer action) {
+	int chunks = (int) Math.min(count, (long) threads * CHUNKS_PER_THREAD);
+	if (threads <= 1 || chunks <= 1) {
+	    for (int i = 0; i < count; i++) {
+		action.accept(i);
+	    }
+	    return;
+	}
+	ForkJoinPool pool = pool(threads);
+	ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[chunks];
+	for (int chunk = 0; chunk < chunks; chunk++) {
+	    int from = (int) ((long) count * chunk / chunks);
+	    int to = (int) ((long) count * (chunk + 1) / chunks);
+	    tasks[chunk] = pool.submit(() -> {
+		for (int i = from; i < to; i++) {
+		    action.accept(i);
+		}
+	    });
+	}
+	for (ForkJoinTask<?> task : tasks) {
+	    task.join();
+	}
+    }
+
+    /**
+     * Runs a computation on the pool with the given number of threads, so that
+     * the tasks it starts with {@link #fork(Supplier)} run in the same pool. With
+     * one thread or fewer the computation runs on the calling thread.
+     * 
+     * @param threads
+     *            The number of threads to use
+     * @param computation
+     *            The computation
+     * @return The result of the computation
+     */
+    static <T> T invoke(int threads, Supplier<T> computation) {
+	if (threads <= 1) {
+	    return computation.get();
+	}
+	ForkJoinPool pool = pool(threads);
+	if (ForkJoinTask.getPool() == pool) {
+	    return computation.get();
+	}
+	return pool.invoke(ForkJoinTask.adapt(computation::get));
+    }
+
+    /**
+     * Starts a computation in the background, to be joined later. This must only
+     * be called from inside a computation started by
+     * {@link #invoke(int, Supplier)} with more than one thread.
+     * 
+     * @param computation
+     *            The computation
+     * @return The task, which gives the result when joined
+     */
+    static <T> ForkJoinTask<T> fork(Supplier<T> computation) {
+	return ForkJoinTask.adapt(computation::get).fork();
+    }
+
+}
@@ -0,0 +1,210 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntToLongFunction;
+
+import mathutils.math.context.ComputeContext;
+
+/**
+ * Evaluates a power series whose terms are each derived from the previous term
+ * by a rational ratio. The series has the form<br />
+ * <br />
+ * S = 1 + y*a(1)/b(1) + y^2*a(1)a(2)/(b(1)b(2)) + ...<br />
+ * <br />
+ * where a(j) and b(j) are small integers. Nearly every series in
+ * {@code BigDecimalMath} can be written this way, for example the sine series
+ * uses y=-x^2, a(j)=1 and b(j)=2j(2j+1).<br />
+ * <br />
+ * The terms are grouped into blocks of about sqrt(n) terms. Only the powers of
+ * y up to the block size are computed at full precision, and within a block the
+ * coefficients are kept as exact integer products. The blocks are combined
+ * with Horner's rule while accumulating an integer numerator and denominator,
+ * so the only full precision division is done once at the end. The integer
+ * coefficients of recently used blocks are cached, so evaluating the same
+ * series at many points with the same precision only multiplies by them. The
+ * blocks do not depend on each other, so at high precisions they are summed in
+ * parallel before being combined in order. Each block checks whether the
+ * computation has been cancelled.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+class Series {
+
+    private static final double LOG2_10 = Math.log(10) / Math.log(2);
+
+    /**
+     * Series evaluated with at least this many bits sum their blocks in
+     * parallel.
+     */
+    private static final int PARALLEL_BITS = 1 << 14;
+
+    /**
+     * The fewest terms a series is summed with, whatever the number of
+     * iterations. A single term is only the constant 1, which no argument
+     * reduction can make accurate.
+     */
+    static final int MIN_TERMS = 2;
+
+    /**
+     * The number of blocks whose coefficients are kept in the cache.
+     */
+    private static final int CACHE_SIZE = 1024;
+
+    private final IntToLongFunction numerator;
+    private final IntToLongFunction denominator;
+    private final Map<Long, BigInteger[]> blocks = Collections
+	    .synchronizedMap(new LinkedHashMap<Long, BigInteger[]>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, BigInteger[]> eldest) {
+		    return size() > CACHE_SIZE;
+		}
+	    });
+
+    /**
+     * Creates a series from the ratio between consecutive terms.
+     * 
+     * @param numerator
+     *            The function a(j), where j starts at 1
+     * @param denominator
+     *            The function b(j), where j starts at 1
+     */
+    Series(IntToLongFunction numerator, IntToLongFunction denominator) {
+	this.numerator = numerator;
+	this.denominator = denominator;
+    }
+
+    /**
+     * Evaluates the series at y. If the context is adaptive, the number of terms
+     * is chosen so the remaining terms are below the working precision, otherwise
+     * the full number of iterations is used, but never fewer than
+     * {@value #MIN_TERMS}. The number of terms used is recorded in the context.
+     * 
+     * @param y
+     *            The value the series is evaluated at
+     * @param cc
+     *            The context to use in calculation
+     * @return The sum of the series
+     */
+    BigDecimal sum(BigDecimal y, ComputeContext cc) {
+	MathContext mc = cc.getAsMathContext();
+	int maxTerms = Math.max(MIN_TERMS, cc.getIterations());
+	int terms = maxTerms;
+	double largestTerm = 0;
+	if (cc.isAdaptive()) {
+	    double logY = BigDecimalMath.approximateLog10(y);
+	    double logTerm = 0;
+	    terms = 1;
+	    while (terms < maxTerms) {
+		logTerm += logY + Math.log10(Math.abs((double) numerator.applyAsLong(terms)))
+			- Math.log10(denominator.applyAsLong(terms));
+		if (logTerm < largestTerm - mc.getPrecision() - 2 || Double.isNaN(logTerm)) {
+		    break;
+		}
+		largestTerm = Math.max(largestTerm, logTerm);
+		terms++;
+	    }
+	}
+	cc.setTermsUsed(terms);
+	int digits = mc.getPrecision() + (int) Math.ceil(largestTerm + Math.log10(terms)) + 3;
+	int bits = (int) Math.ceil(digits * LOG2_10);
+	int blockSize = Math.max(1, (int) Math.sqrt(terms));
+
+	BigInteger[] powers = new BigInteger[blockSize + 1];
+	powers[0] = BigInteger.ONE.shiftLeft(bits);
+	powers[1] = toFixed(y, bits);
+	for (int k = 2; k <= blockSize; k++) {
+	    powers[k] = powers[k - 1].multiply(powers[1]).shiftRight(bits);
+	}
+
+	int lastBlock = (terms - 1) / blockSize * blockSize;
+	int lastLength = terms - lastBlock;
+	int blockCount = lastBlock / blockSize + 1;
+	BigInteger[][] coefficients = new BigInteger[blockCount][];
+	BigInteger[] sums = new BigInteger[blockCount];
+	int threads = bits >= PARALLEL_BITS ? cc.getThreads() : 0;
+	Parallel.forEach(blockCount, threads, i -> {
+	    cc.checkCancelled();
+	    coefficients[i] = coefficients(i * blockSize, i == blockCount - 1 ? lastLength : blockSize);
+	    sums[i] = block(powers, coefficients[i]);
+	});
+
+	BigInteger sumNumerator = sums[blockCount - 1];
+	BigInteger sumDenominator = coefficients[blockCount - 1][lastLength];
+	for (int i = blockCount - 2; i >= 0; i--) {
+	    cc.checkCancelled();
+	    BigInteger a = coefficients[i][blockSize + 1];
+	    BigInteger b = coefficients[i][blockSize + 2];
+	    BigInteger inner = sums[i].multiply(BigInteger.valueOf(denominator.applyAsLong((i + 1) * blockSize)));
+	    sumNumerator = inner.multiply(sumDenominator)
+		    .add(powers[blockSize].multiply(sumNumerator).shiftRight(bits).multiply(a));
+	    sumDenominator = sumDenominator.multiply(b);
+	}
+	return new BigDecimal(sumNumerator).divide(new BigDecimal(sumDenominator.shiftLeft(bits)), mc);
+    }
+
+    /**
+     * Sums the terms start through start+length-1 relative to the term at start.
+     * The returned value is a fixed point number that is scaled by
+     * b(start+1)...b(start+length-1).
+     */
+    private static BigInteger block(BigInteger[] powers, BigInteger[] coefficients) {
+	int length = coefficients.length - 3;
+	BigInteger sum = BigInteger.ZERO;
+	for (int k = 0; k < length; k++) {
+	    sum = sum.add(powers[k].multiply(coefficients[k]));
+	}
+	return sum;
+    }
+
+    /**
+     * Gets the integer coefficients of the block of terms start through
+     * start+length-1 from the cache, or computes them. The first length entries
+     * are the coefficients a(start+1)...a(start+k)*b(start+k+1)...b(start+length-1)
+     * of each term. They are followed by b(start+1)...b(start+length-1), and by
+     * the products of a(j) and of b(j) for j from start+1 to start+length.
+     */
+    private BigInteger[] coefficients(int start, int length) {
+	Long key = (long) start << 32 | length;
+	BigInteger[] coefficients = blocks.get(key);
+	if (coefficients != null) {
+	    return coefficients;
+	}
+	BigInteger[] suffix = new BigInteger[length];
+	suffix[length - 1] = BigInteger.ONE;
+	for (int k = length - 2; k >= 0; k--) {
+	    suffix[k] = suffix[k + 1].multiply(BigInteger.valueOf(denominator.applyAsLong(start + k + 1)));
+	}
+	coefficients = new BigInteger[length + 3];
+	BigInteger prefix = BigInteger.ONE;
+	coefficients[0] = suffix[0];
+	for (int k = 1; k < length; k++) {
+	    prefix = prefix.multiply(BigInteger.valueOf(numerator.applyAsLong(start + k)));
+	    coefficients[k] = prefix.multiply(suffix[k]);
+	}
+	coefficients[length] = suffix[0];
+	coefficients[length + 1] = prefix.multiply(BigInteger.valueOf(numerator.applyAsLong(start + length)));
+	coefficients[length + 2] = suffix[0].multiply(BigInteger.valueOf(denominator.applyAsLong(start + length)));
+	blocks.put(key, coefficients);
+	return coefficients;
+    }
+
+    /**
+     * Converts a number to a fixed point integer with the given number of
+     * fractional bits.
+     */
+    static BigInteger toFixed(BigDecimal a, int bits) {
+	if (a.scale() <= 0) {
+	    return a.toBigIntegerExact().shiftLeft(bits);
+	}
+	return a.unscaledValue().shiftLeft(bits).divide(BigInteger.TEN.pow(a.scale()));
+    }
+
+}
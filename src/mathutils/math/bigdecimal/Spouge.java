@@ -0,0 +1,131 @@
+package mathutils.math.bigdecimal;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import mathutils.math.context.ComputeContext;
+
+/**
+ * Computes the gamma function with Spouge's approximation<br />
+ * <br />
+ * &Gamma;(z+1) = (z+a)^(z+1/2) * e^(-z-a) * (c(0) + c(1)/(z+1) + ... +
+ * c(a-1)/(z+a-1))<br />
+ * <br />
+ * where c(0)=sqrt(2&pi;) and c(k)=(-1)^(k-1) * (a-k)^(k-1/2) * e^(a-k)/(k-1)!.
+ * For z > 0 the relative error is below (2&pi;)^(-a-1/2), so a grows linearly
+ * with the number of digits. The coefficients alternate in sign and grow to
+ * about 10^(0.56a), so the sum is computed with that many extra digits.
+ * Computing the coefficients is the expensive part, so the tables for the most
+ * recently used precisions are cached.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+class Spouge {
+
+    /**
+     * The number of coefficient tables kept in the cache.
+     */
+    private static final int CACHE_SIZE = 8;
+
+    /**
+     * An upper bound for log10(max |c(k)|)/a.
+     */
+    private static final double COEFFICIENT_GROWTH = 0.56;
+
+    private static final double LOG10_2PI = Math.log10(2 * Math.PI);
+
+    private static final Map<Integer, Spouge> CACHE = Collections
+	    .synchronizedMap(new LinkedHashMap<Integer, Spouge>(CACHE_SIZE, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Spouge> eldest) {
+		    return size() > CACHE_SIZE;
+		}
+	    });
+
+    private final int a;
+    private final MathContext sumMc;
+    private final BigDecimal[] coefficients;
+
+    /**
+     * Computes the coefficient table for the given precision.
+     */
+    private Spouge(int precision, ComputeContext cc) {
+	a = (int) Math.ceil((precision + 2) / LOG10_2PI);
+	ComputeContext work = cc.withPrecision(
+		precision + (int) Math.ceil(COEFFICIENT_GROWTH * a + Math.log10(a)) + 10);
+	sumMc = work.getAsMathContext();
+	coefficients = new BigDecimal[a];
+	coefficients[0] = BigDecimalMath.sqrt(BigDecimalMath.pi(work).multiply(BigDecimal.valueOf(2)), sumMc);
+	BigDecimal inverseE = BigDecimal.ONE.divide(BigDecimalMath.e(work), sumMc);
+	BigDecimal power = BigDecimalMath.exp(BigDecimal.valueOf(a - 1), work);
+	BigInteger factorial = BigInteger.ONE;
+	for (int k = 1; k < a; k++) {
+	    cc.checkCancelled();
+	    if (k > 1) {
+		factorial = factorial.multiply(BigInteger.valueOf(k - 1));
+		power = power.multiply(inverseE, sumMc);
+	    }
+	    BigDecimal ratio = new BigDecimal(BigInteger.valueOf(a - k).pow(k)).divide(new BigDecimal(factorial),
+		    sumMc);
+	    BigDecimal c = ratio.multiply(power, sumMc).divide(BigDecimalMath.sqrt(BigDecimal.valueOf(a - k), sumMc),
+		    sumMc);
+	    coefficients[k] = k % 2 == 0 ? c.negate() : c;
+	}
+    }
+
+    /**
+     * Gets the coefficient table for the given precision from the cache, or
+     * computes it.
+     * 
+     * @param precision
+     *            The number of correct digits the approximation must give
+     * @param cc
+     *            The context to use when computing a new table
+     * @return The table
+     */
+    static Spouge forPrecision(int precision, ComputeContext cc) {
+	Spouge spouge = CACHE.get(precision);
+	if (spouge == null) {
+	    spouge = new Spouge(precision, cc);
+	    CACHE.put(precision, spouge);
+	}
+	return spouge;
+    }
+
+    /**
+     * Splits &Gamma;(z+1) into e^t * s, where t=(z+1/2)*ln(z+a)-z-a and s is the
+     * sum of the coefficients. Keeping the two apart lets ln&Gamma; avoid
+     * computing the exponential.
+     * 
+     * @param z
+     *            The number, which must be positive
+     * @param cc
+     *            The context that defines the precision of the result
+     * @return An array holding t and s, where t has enough digits that e^t has
+     *         the precision of the context
+     */
+    BigDecimal[] split(BigDecimal z, ComputeContext cc) {
+	BigDecimal shifted = z.add(BigDecimal.valueOf(a));
+	BigDecimal rounded = z.round(sumMc);
+	BigDecimal sum = coefficients[0];
+	for (int k = 1; k < a; k++) {
+	    cc.checkCancelled();
+	    sum = sum.add(coefficients[k].divide(rounded.add(BigDecimal.valueOf(k)), sumMc));
+	}
+
+	BigDecimal half = z.add(new BigDecimal("0.5"));
+	double magnitude = BigDecimalMath.approximateLog10(half)
+		+ Math.log10(BigDecimalMath.approximateLog10(shifted) * Math.log(10));
+	ComputeContext work = cc.withPrecision(cc.getResultPrecision() + (int) Math.max(0, Math.ceil(magnitude)) + 5);
+	BigDecimal exponent = half.multiply(BigDecimalMath.ln(shifted, work)).subtract(shifted);
+	return new BigDecimal[] { exponent.round(work.getAsMathContext()), sum };
+    }
+
+}
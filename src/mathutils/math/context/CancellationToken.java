@@ -0,0 +1,28 @@
+package mathutils.math.context;
+
+/**
+ * A flag that asks the computations using a {@link ComputeContext} to stop.
+ * One token can be shared by many contexts, for example all the computations
+ * made for one request, and cancelling it stops all of them at their next
+ * check. This class is thread-safe.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    /**
+     * Asks every computation that uses this token to stop. Cancelling cannot be
+     * undone.
+     */
+    public void cancel() {
+	cancelled = true;
+    }
+
+    public boolean isCancelled() {
+	return cancelled;
+    }
+
+}
@@ -3,6 +3,10 @@ package mathutils.math.context;
 import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * The {@code ComputeContext} class defines characteristics that are to be used
@@ -18,6 +22,16 @@ public class ComputeContext {
     private int finalPrecision = 10000;
     private int roundingMode = BigDecimal.ROUND_HALF_UP;
     private int threads = 0;
+    private boolean adaptive = true;
+    private boolean chebyshev = false;
+    private boolean hasDeadline = false;
+    private long deadline;
+    private CancellationToken cancellationToken;
+    private ProgressListener progressListener;
+    private ComputeMetrics metrics;
+    private Measurement measurement;
+    private ResultCache resultCache;
+    private final ThreadLocal<Integer> termsUsed = new ThreadLocal<Integer>();
 
     /**
      * Dummy constructor
@@ -57,10 +71,27 @@ public class ComputeContext {
 	return precision;
     }
     
+    /**
+     * Gets the number of digits that results are rounded to. Functions compute
+     * with as many guard digits as they need and only round to this precision at
+     * the end.
+     * 
+     * @return The final precision
+     */
     public int getFinalPrecision() {
 	return finalPrecision;
     }
 
+    /**
+     * Gets the number of digits in the results of functions computed with this
+     * context, which is the smaller of the precision and the final precision.
+     * 
+     * @return The result precision
+     */
+    public int getResultPrecision() {
+	return Math.min(precision, finalPrecision);
+    }
+
     public int getRoundingMode() {
 	return roundingMode;
     }
@@ -73,6 +104,346 @@ public class ComputeContext {
 	return threads;
     }
 
+    /**
+     * Checks whether series stop as soon as their terms are too small to change
+     * the result at the working precision. When this is true, the number of
+     * iterations only limits how many terms a series may use.
+     * 
+     * @return true if series terminate once they converge
+     */
+    public boolean isAdaptive() {
+	return adaptive;
+    }
+
+    /**
+     * Sets whether series stop as soon as they converge, or always use the full
+     * number of iterations.
+     * 
+     * @param adaptive
+     *            true if series should terminate once they converge
+     */
+    public void setAdaptive(boolean adaptive) {
+	this.adaptive = adaptive;
+    }
+
+    /**
+     * Checks whether sin, cos and exp are evaluated from cached Chebyshev
+     * expansions instead of series. Building the expansions for a precision
+     * takes much longer than one evaluation, so they only pay off when many
+     * values are computed at the same precision. They are used for results of at
+     * most 100 digits.
+     * 
+     * @return true if Chebyshev expansions are used
+     */
+    public boolean isChebyshev() {
+	return chebyshev;
+    }
+
+    /**
+     * Sets whether sin, cos and exp are evaluated from cached Chebyshev
+     * expansions instead of series.
+     * 
+     * @param chebyshev
+     *            true if Chebyshev expansions should be used
+     */
+    public void setChebyshev(boolean chebyshev) {
+	this.chebyshev = chebyshev;
+    }
+
+    /**
+     * Sets the time by which computations with this context must finish. Once
+     * it has passed, they throw a {@code CancellationException} at their next
+     * check.
+     * 
+     * @param deadline
+     *            The deadline as a value of {@link System#nanoTime()}
+     */
+    public void setDeadline(long deadline) {
+	this.deadline = deadline;
+	this.hasDeadline = true;
+    }
+
+    /**
+     * Sets a deadline the given time from now.
+     * 
+     * @param timeout
+     *            The time computations may take
+     * @param unit
+     *            The unit of the timeout
+     * @see #setDeadline(long)
+     */
+    public void setTimeout(long timeout, TimeUnit unit) {
+	setDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * Removes the deadline, so computations may take as long as they need.
+     */
+    public void clearDeadline() {
+	hasDeadline = false;
+    }
+
+    public boolean hasDeadline() {
+	return hasDeadline;
+    }
+
+    /**
+     * Gets the deadline as a value of {@link System#nanoTime()}. It is only
+     * meaningful if {@link #hasDeadline()} is true.
+     * 
+     * @return The deadline
+     */
+    public long getDeadline() {
+	return deadline;
+    }
+
+    public CancellationToken getCancellationToken() {
+	return cancellationToken;
+    }
+
+    /**
+     * Sets the token that can stop computations with this context.
+     * 
+     * @param cancellationToken
+     *            The token, or null if computations cannot be cancelled
+     */
+    public void setCancellationToken(CancellationToken cancellationToken) {
+	this.cancellationToken = cancellationToken;
+    }
+
+    public ProgressListener getProgressListener() {
+	return progressListener;
+    }
+
+    /**
+     * Sets the listener that is told how far long running steps have come.
+     * 
+     * @param progressListener
+     *            The listener, or null for no reports
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+	this.progressListener = progressListener;
+    }
+
+    /**
+     * Stops the computation if its token has been cancelled or its deadline has
+     * passed. Series, product trees and Newton's method call this between their
+     * steps, and it is cheap enough to call often.
+     * 
+     * @throws CancellationException
+     *             if the computation should stop
+     */
+    public void checkCancelled() {
+	if (cancellationToken != null && cancellationToken.isCancelled()) {
+	    throw new CancellationException("The computation was cancelled");
+	}
+	if (hasDeadline && System.nanoTime() - deadline > 0) {
+	    throw new CancellationException("The deadline of the computation has passed");
+	}
+    }
+
+    /**
+     * Checks for cancellation and passes a progress report to the listener, if
+     * there is one.
+     * 
+     * @param step
+     *            The name of the step
+     * @param done
+     *            The amount of work done so far
+     * @param total
+     *            The amount of work the step needs in total
+     * @throws CancellationException
+     *             if the computation should stop
+     * @see ProgressListener#progress(String, long, long)
+     */
+    public void reportProgress(String step, long done, long total) {
+	checkCancelled();
+	if (progressListener != null) {
+	    progressListener.progress(step, done, total);
+	}
+    }
+
+    public ComputeMetrics getMetrics() {
+	return metrics;
+    }
+
+    /**
+     * Sets the metrics that calls with this context are recorded in.
+     * 
+     * @param metrics
+     *            The metrics, or null to turn measuring off
+     */
+    public void setMetrics(ComputeMetrics metrics) {
+	this.metrics = metrics;
+    }
+
+    /**
+     * Runs a computation and records its measurements in the metrics of this
+     * context. The computation is given a copy of this context without metrics,
+     * so the functions it calls are counted as part of it rather than on their
+     * own. Without metrics the computation is simply run with this context.
+     * 
+     * @param function
+     *            The name the measurements are recorded under
+     * @param computation
+     *            The computation, which receives the context to use
+     * @return The result of the computation
+     */
+    public <T> T measure(String function, Function<ComputeContext, T> computation) {
+	ComputeMetrics current = metrics;
+	if (current == null) {
+	    return computation.apply(this);
+	}
+	ComputeContext work = copy();
+	work.metrics = null;
+	work.measurement = new Measurement();
+	long bytes = ComputeMetrics.allocatedBytes();
+	long start = System.nanoTime();
+	T result = computation.apply(work);
+	long nanos = System.nanoTime() - start;
+	if (bytes >= 0) {
+	    bytes = ComputeMetrics.allocatedBytes() - bytes;
+	}
+	int terms = work.getTermsUsed();
+	setTermsUsed(terms);
+	int workingPrecision = work.measurement.workingPrecision.get();
+	current.record(new ComputeMetrics.Sample(function, terms,
+		workingPrecision == 0 ? getResultPrecision() : workingPrecision,
+		work.measurement.reductionSteps.get(), nanos, bytes));
+	return result;
+    }
+
+    public ResultCache getResultCache() {
+	return resultCache;
+    }
+
+    /**
+     * Sets the cache that calls with this context look their results up in.
+     * 
+     * @param resultCache
+     *            The cache, or null to compute every call
+     */
+    public void setResultCache(ResultCache resultCache) {
+	this.resultCache = resultCache;
+    }
+
+    /**
+     * Answers a call from the result cache of this context, or runs the
+     * computation and caches its result. The computation is given a copy of this
+     * context without the cache, so the functions it calls are not cached on
+     * their own. Without a cache the computation is simply run with this
+     * context.
+     * 
+     * @param function
+     *            The name the result is cached under
+     * @param computation
+     *            The computation, which receives the context to use
+     * @param arguments
+     *            The arguments of the function
+     * @return The result of the computation
+     */
+    public BigDecimal cached(String function, Function<ComputeContext, BigDecimal> computation,
+	    BigDecimal... arguments) {
+	ResultCache current = resultCache;
+	if (current == null) {
+	    return computation.apply(this);
+	}
+	BigDecimal result = current.get(function, this, arguments);
+	if (result != null) {
+	    setTermsUsed(0);
+	    return result;
+	}
+	ComputeContext work = copy();
+	work.resultCache = null;
+	result = computation.apply(work);
+	setTermsUsed(work.getTermsUsed());
+	current.put(function, this, result, arguments);
+	return result;
+    }
+
+    /**
+     * Records the working precision and the number of argument reduction steps
+     * of the function being measured. This does nothing unless the context
+     * belongs to a call made through {@link #measure(String, Function)}.
+     * 
+     * @param workingPrecision
+     *            The number of digits the function computes with
+     * @param reductionSteps
+     *            The number of times the argument is reduced
+     */
+    public void recordWork(int workingPrecision, int reductionSteps) {
+	Measurement current = measurement;
+	if (current != null) {
+	    current.workingPrecision.accumulateAndGet(workingPrecision, Math::max);
+	    current.reductionSteps.addAndGet(reductionSteps);
+	}
+    }
+
+    /**
+     * Gets the number of series terms used by the most recent computation done
+     * with this context on the current thread.
+     * 
+     * @return The number of terms, or zero if nothing has been computed
+     */
+    public int getTermsUsed() {
+	Integer terms = termsUsed.get();
+	return terms == null ? 0 : terms;
+    }
+
+    /**
+     * Records the number of series terms used by a computation done with this
+     * context on the current thread.
+     * 
+     * @param terms
+     *            The number of terms
+     */
+    public void setTermsUsed(int terms) {
+	termsUsed.set(terms);
+    }
+
+    /**
+     * Creates a copy of this context whose results have a different precision.
+     * Both the precision and the final precision of the copy are set to the given
+     * value, and all other settings are kept, including the deadline, the
+     * cancellation token, the progress listener, the metrics and the result
+     * cache.
+     * 
+     * @param precision
+     *            The precision of the copy
+     * @return The new context
+     */
+    public ComputeContext withPrecision(int precision) {
+	ComputeContext copy = copy();
+	copy.precision = precision;
+	copy.finalPrecision = precision;
+	return copy;
+    }
+
+    /**
+     * Copies every setting of this context. The copy shares the measurement of
+     * the call being measured, if there is one.
+     */
+    private ComputeContext copy() {
+	ComputeContext copy = new ComputeContext(iterations, precision, finalPrecision, roundingMode, threads);
+	copy.adaptive = adaptive;
+	copy.chebyshev = chebyshev;
+	copy.hasDeadline = hasDeadline;
+	copy.deadline = deadline;
+	copy.cancellationToken = cancellationToken;
+	copy.progressListener = progressListener;
+	copy.metrics = metrics;
+	copy.measurement = measurement;
+	copy.resultCache = resultCache;
+	return copy;
+    }
+
+    /**
+     * Gets a {@code MathContext} with the result precision and rounding mode of
+     * this context.
+     * 
+     * @return The {@code MathContext}
+     * @see #getResultPrecision()
+     */
     public MathContext getAsMathContext() {
 	RoundingMode mode = null;
 	switch (roundingMode) {
@@ -86,7 +457,18 @@ public class ComputeContext {
 	    mode = RoundingMode.HALF_UP;
 	    break;
 	}
-	return new MathContext(precision, mode);
+	return new MathContext(getResultPrecision(), mode);
+    }
+
+    /**
+     * The working precision and reduction steps of the call being measured,
+     * shared by every copy of its context.
+     */
+    private static class Measurement {
+
+	private final AtomicInteger workingPrecision = new AtomicInteger();
+	private final AtomicInteger reductionSteps = new AtomicInteger();
+
     }
 
 }
@@ -0,0 +1,354 @@
+package mathutils.math.context;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects measurements of the functions computed with a
+ * {@link ComputeContext}. Metrics are off unless an instance is attached with
+ * {@link ComputeContext#setMetrics(ComputeMetrics)}, and a context without one
+ * only pays for a null check per call.<br />
+ * <br />
+ * For every function this keeps the number of calls and the total number of
+ * series terms, argument reduction steps, nanoseconds and allocated bytes, as
+ * well as histograms of the time and the working precision of the calls. Only
+ * the outermost call is measured, so the time of a function includes the
+ * functions it calls itself. Allocations are those of the calling thread, and
+ * are not counted if the JVM cannot measure them. Every measurement is also
+ * passed to the listener, if one is set, which can forward them to another
+ * metrics system or to flight recorder events on JVMs that have them. This
+ * class is thread-safe.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public class ComputeMetrics {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, FunctionMetrics> functions = new ConcurrentHashMap<String, FunctionMetrics>();
+    private volatile Listener listener;
+
+    /**
+     * Creates an empty set of metrics.
+     */
+    public ComputeMetrics() {
+
+    }
+
+    /**
+     * Creates an empty set of metrics that passes every measurement to a
+     * listener.
+     * 
+     * @param listener
+     *            The listener
+     */
+    public ComputeMetrics(Listener listener) {
+	this.listener = listener;
+    }
+
+    public Listener getListener() {
+	return listener;
+    }
+
+    public void setListener(Listener listener) {
+	this.listener = listener;
+    }
+
+    /**
+     * Adds a measurement to the metrics of its function and passes it to the
+     * listener.
+     * 
+     * @param sample
+     *            The measurement
+     */
+    public void record(Sample sample) {
+	functions.computeIfAbsent(sample.getFunction(), FunctionMetrics::new).add(sample);
+	Listener current = listener;
+	if (current != null) {
+	    current.recorded(sample);
+	}
+    }
+
+    /**
+     * Gets the metrics of one function.
+     * 
+     * @param function
+     *            The name of the function, such as "exp"
+     * @return The metrics, or null if the function has not been called
+     */
+    public FunctionMetrics get(String function) {
+	return functions.get(function);
+    }
+
+    /**
+     * Gets the metrics of every function that has been called, sorted by name.
+     * 
+     * @return The metrics by function name
+     */
+    public Map<String, FunctionMetrics> getAll() {
+	return Collections.unmodifiableMap(new TreeMap<String, FunctionMetrics>(functions));
+    }
+
+    /**
+     * Forgets all measurements.
+     */
+    public void reset() {
+	functions.clear();
+    }
+
+    /**
+     * Gets the number of bytes the current thread has allocated so far.
+     * 
+     * @return The number of bytes, or -1 if the JVM cannot measure it
+     */
+    public static long allocatedBytes() {
+	if (THREADS instanceof com.sun.management.ThreadMXBean) {
+	    return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	return -1;
+    }
+
+    /**
+     * Receives every measurement as it is recorded.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+	/**
+	 * Called after each measured call, on the thread that made it.
+	 * 
+	 * @param sample
+	 *            The measurement
+	 */
+	void recorded(Sample sample);
+
+    }
+
+    /**
+     * The measurement of one call.
+     */
+    public static final class Sample {
+
+	private final String function;
+	private final int terms;
+	private final int workingPrecision;
+	private final int reductionSteps;
+	private final long nanos;
+	private final long allocatedBytes;
+
+	/**
+	 * Creates a measurement.
+	 * 
+	 * @param function
+	 *            The name of the function
+	 * @param terms
+	 *            The number of series terms used
+	 * @param workingPrecision
+	 *            The number of digits the function computed with
+	 * @param reductionSteps
+	 *            The number of times the argument was reduced before a series
+	 *            was summed
+	 * @param nanos
+	 *            The wall time of the call in nanoseconds
+	 * @param allocatedBytes
+	 *            The number of bytes allocated by the call, or -1 if unknown
+	 */
+	public Sample(String function, int terms, int workingPrecision, int reductionSteps, long nanos,
+		long allocatedBytes) {
+	    this.function = function;
+	    this.terms = terms;
+	    this.workingPrecision = workingPrecision;
+	    this.reductionSteps = reductionSteps;
+	    this.nanos = nanos;
+	    this.allocatedBytes = allocatedBytes;
+	}
+
+	public String getFunction() {
+	    return function;
+	}
+
+	public int getTerms() {
+	    return terms;
+	}
+
+	public int getWorkingPrecision() {
+	    return workingPrecision;
+	}
+
+	public int getReductionSteps() {
+	    return reductionSteps;
+	}
+
+	public long getNanos() {
+	    return nanos;
+	}
+
+	public long getAllocatedBytes() {
+	    return allocatedBytes;
+	}
+
+    }
+
+    /**
+     * The totals and histograms of one function.
+     */
+    public static final class FunctionMetrics {
+
+	private final String function;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder terms = new LongAdder();
+	private final LongAdder reductionSteps = new LongAdder();
+	private final LongAdder nanos = new LongAdder();
+	private final LongAdder allocatedBytes = new LongAdder();
+	private final Histogram time = new Histogram();
+	private final Histogram precision = new Histogram();
+
+	FunctionMetrics(String function) {
+	    this.function = function;
+	}
+
+	void add(Sample sample) {
+	    calls.increment();
+	    terms.add(sample.getTerms());
+	    reductionSteps.add(sample.getReductionSteps());
+	    nanos.add(sample.getNanos());
+	    if (sample.getAllocatedBytes() > 0) {
+		allocatedBytes.add(sample.getAllocatedBytes());
+	    }
+	    time.add(sample.getNanos());
+	    precision.add(sample.getWorkingPrecision());
+	}
+
+	public String getFunction() {
+	    return function;
+	}
+
+	public long getCalls() {
+	    return calls.sum();
+	}
+
+	public long getTerms() {
+	    return terms.sum();
+	}
+
+	public long getReductionSteps() {
+	    return reductionSteps.sum();
+	}
+
+	public long getNanos() {
+	    return nanos.sum();
+	}
+
+	public long getAllocatedBytes() {
+	    return allocatedBytes.sum();
+	}
+
+	/**
+	 * Gets the histogram of the wall time of the calls in nanoseconds.
+	 * 
+	 * @return The histogram
+	 */
+	public Histogram getTimeHistogram() {
+	    return time;
+	}
+
+	/**
+	 * Gets the histogram of the working precision of the calls in digits.
+	 * 
+	 * @return The histogram
+	 */
+	public Histogram getPrecisionHistogram() {
+	    return precision;
+	}
+
+	@Override
+	public String toString() {
+	    return function + ": " + getCalls() + " calls, " + getTerms() + " terms, " + getReductionSteps()
+		    + " reduction steps, " + getNanos() + " ns, " + getAllocatedBytes() + " bytes";
+	}
+
+    }
+
+    /**
+     * Counts values in buckets whose bounds are powers of two. Bucket 0 holds
+     * the values 0 and 1, and bucket i holds the values from 2^i to 2^(i+1)-1.
+     */
+    public static final class Histogram {
+
+	private static final int BUCKETS = 64;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	void add(long value) {
+	    counts.incrementAndGet(bucket(value));
+	}
+
+	/**
+	 * Gets the bucket a value belongs to.
+	 * 
+	 * @param value
+	 *            The value
+	 * @return The index of the bucket
+	 */
+	public static int bucket(long value) {
+	    return value <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(value);
+	}
+
+	public int getBucketCount() {
+	    return BUCKETS;
+	}
+
+	/**
+	 * Gets the number of values in a bucket.
+	 * 
+	 * @param bucket
+	 *            The index of the bucket
+	 * @return The number of values
+	 */
+	public long getCount(int bucket) {
+	    return counts.get(bucket);
+	}
+
+	/**
+	 * Gets the number of values in all buckets.
+	 * 
+	 * @return The number of values
+	 */
+	public long getTotal() {
+	    long total = 0;
+	    for (int i = 0; i < BUCKETS; i++) {
+		total += counts.get(i);
+	    }
+	    return total;
+	}
+
+	/**
+	 * Estimates a quantile by the upper bound of the bucket it falls in.
+	 * 
+	 * @param quantile
+	 *            The quantile, between 0 and 1
+	 * @return A value that at least that fraction of the values do not exceed,
+	 *         or 0 if the histogram is empty
+	 */
+	public long getQuantile(double quantile) {
+	    long total = getTotal();
+	    long seen = 0;
+	    for (int i = 0; i < BUCKETS; i++) {
+		seen += counts.get(i);
+		if (seen > 0 && seen >= quantile * total) {
+		    return i == BUCKETS - 1 ? Long.MAX_VALUE : (2L << i) - 1;
+		}
+	    }
+	    return 0;
+	}
+
+    }
+
+}
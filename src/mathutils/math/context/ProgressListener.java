@@ -0,0 +1,29 @@
+package mathutils.math.context;
+
+/**
+ * Receives reports on how far the long running steps of a computation have
+ * come. Steps can be nested, for example the exponentials inside Newton's
+ * method for a logarithm, so each report names the step it belongs to.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+    /**
+     * Called each time a step makes progress. This may be called from several
+     * threads at once when a computation runs in parallel, so it should return
+     * quickly and must be thread-safe.
+     * 
+     * @param step
+     *            The name of the step, such as "newton" or "agm"
+     * @param done
+     *            The amount of work done so far, such as the number of correct
+     *            digits
+     * @param total
+     *            The amount of work the step needs in total
+     */
+    void progress(String step, long done, long total);
+
+}
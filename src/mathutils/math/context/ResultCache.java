@@ -0,0 +1,249 @@
+package mathutils.math.context;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the results of functions computed with a {@link ComputeContext},
+ * so that arguments which recur are not computed again. The cache is off unless
+ * an instance is attached with
+ * {@link ComputeContext#setResultCache(ResultCache)}, and one instance can be
+ * shared by any number of contexts and threads.<br />
+ * <br />
+ * Results are kept by function, argument and the settings of the context that
+ * change the result, with the precision they were computed with. A result also answers requests for fewer digits,
+ * which get it rounded to their precision, and a result with more digits
+ * replaces the one kept before. Rounding a result a second time can differ from
+ * computing it directly in the last digit, which is within the error every
+ * function allows. Results that are computed exactly, namely factorials,
+ * gamma at small integers and half integers, and log10 of powers of ten, are
+ * not cached, so that they keep their exact value. Once the cache holds its
+ * maximum number of results, the one used least recently is evicted. Only the
+ * outermost call is cached, not the functions it calls itself. This class is
+ * thread-safe.
+ * 
+ * @author Hanavan Kuhn
+ *
+ */
+public class ResultCache {
+
+    private final int maximumSize;
+    private final Map<Key, Result> results;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an empty cache.
+     * 
+     * @param maximumSize
+     *            The number of results the cache can hold
+     */
+    public ResultCache(int maximumSize) {
+	if (maximumSize <= 0) {
+	    throw new IllegalArgumentException("The size of a cache must be positive");
+	}
+	this.maximumSize = maximumSize;
+	results = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+		if (size() > ResultCache.this.maximumSize) {
+		    evictions.increment();
+		    return true;
+		}
+		return false;
+	    }
+
+	};
+    }
+
+    /**
+     * Looks up the result of a function.
+     * 
+     * @param function
+     *            The name of the function, such as "exp"
+     * @param cc
+     *            The context of the request
+     * @param arguments
+     *            The arguments
+     * @return The result rounded to the result precision of the context, or
+     *         null if no result with at least that precision is cached
+     */
+    public BigDecimal get(String function, ComputeContext cc, BigDecimal... arguments) {
+	Key key = new Key(function, arguments, cc);
+	Result result;
+	synchronized (results) {
+	    result = results.get(key);
+	}
+	int precision = cc.getResultPrecision();
+	if (result == null || result.precision < precision) {
+	    misses.increment();
+	    return null;
+	}
+	hits.increment();
+	return result.precision == precision ? result.value : result.value.round(cc.getAsMathContext());
+    }
+
+    /**
+     * Stores the result of a function, unless a result with more digits is
+     * cached already.
+     * 
+     * @param function
+     *            The name of the function, such as "exp"
+     * @param cc
+     *            The context the result was computed with
+     * @param value
+     *            The result
+     * @param arguments
+     *            The arguments
+     */
+    public void put(String function, ComputeContext cc, BigDecimal value, BigDecimal... arguments) {
+	Key key = new Key(function, arguments, cc);
+	Result result = new Result(value, cc.getResultPrecision());
+	synchronized (results) {
+	    Result cached = results.get(key);
+	    if (cached == null || cached.precision < result.precision) {
+		results.put(key, result);
+	    }
+	}
+    }
+
+    public int getMaximumSize() {
+	return maximumSize;
+    }
+
+    /**
+     * Gets the number of results the cache holds.
+     * 
+     * @return The number of results
+     */
+    public int size() {
+	synchronized (results) {
+	    return results.size();
+	}
+    }
+
+    /**
+     * Gets the number of requests that were answered from the cache.
+     * 
+     * @return The number of hits
+     */
+    public long getHits() {
+	return hits.sum();
+    }
+
+    /**
+     * Gets the number of requests that had to be computed.
+     * 
+     * @return The number of misses
+     */
+    public long getMisses() {
+	return misses.sum();
+    }
+
+    /**
+     * Gets the number of results that were removed to make room for others.
+     * 
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+	return evictions.sum();
+    }
+
+    /**
+     * Gets the fraction of requests that were answered from the cache.
+     * 
+     * @return The hit rate, or 0 if there have been no requests
+     */
+    public double getHitRate() {
+	long hits = getHits();
+	long total = hits + getMisses();
+	return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Removes every result and resets the statistics.
+     */
+    public void clear() {
+	synchronized (results) {
+	    results.clear();
+	}
+	hits.reset();
+	misses.reset();
+	evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+	return size() + "/" + maximumSize + " results, " + getHits() + " hits, " + getMisses() + " misses, "
+		+ getEvictions() + " evictions";
+    }
+
+    /**
+     * A cached value and the precision it was computed with.
+     */
+    private static final class Result {
+
+	private final BigDecimal value;
+	private final int precision;
+
+	Result(BigDecimal value, int precision) {
+	    this.value = value;
+	    this.precision = precision;
+	}
+
+    }
+
+    /**
+     * Identifies a result by its function, its arguments and the settings of the
+     * context other than the precision that change the result. Arguments are
+     * compared with their scale, so that a call is never answered with the
+     * result of an argument that its function validates differently.
+     */
+    private static final class Key {
+
+	private final String function;
+	private final BigDecimal[] arguments;
+	private final int roundingMode;
+	private final int iterations;
+	private final boolean adaptive;
+	private final boolean chebyshev;
+
+	Key(String function, BigDecimal[] arguments, ComputeContext cc) {
+	    this.function = function;
+	    this.arguments = arguments.clone();
+	    this.roundingMode = cc.getRoundingMode();
+	    this.iterations = cc.getIterations();
+	    this.adaptive = cc.isAdaptive();
+	    this.chebyshev = cc.isChebyshev();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+	    if (!(o instanceof Key)) {
+		return false;
+	    }
+	    Key other = (Key) o;
+	    return function.equals(other.function) && Arrays.equals(arguments, other.arguments)
+		    && roundingMode == other.roundingMode && iterations == other.iterations
+		    && adaptive == other.adaptive && chebyshev == other.chebyshev;
+	}
+
+	@Override
+	public int hashCode() {
+	    int hash = function.hashCode() * 31 + Arrays.hashCode(arguments);
+	    hash = hash * 31 + roundingMode;
+	    hash = hash * 31 + iterations;
+	    hash = hash * 31 + (adaptive ? 1 : 0);
+	    return hash * 31 + (chebyshev ? 1 : 0);
+	}
+
+    }
+
+}
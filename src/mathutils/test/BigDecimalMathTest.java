@@ -0,0 +1,704 @@
+package mathutils.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.nio.channels.Channels;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import mathutils.math.bigdecimal.AsyncBigDecimalMath;
+import mathutils.math.bigdecimal.BigDecimalBall;
+import mathutils.math.bigdecimal.BigDecimalMath;
+import mathutils.math.bigdecimal.ConstantStore;
+import mathutils.math.bigdecimal.DigitSpigot;
+import mathutils.math.bigdecimal.DigitWriter;
+import mathutils.math.bigdecimal.MathFunction;
+import mathutils.math.context.CancellationToken;
+import mathutils.math.context.ComputeContext;
+import mathutils.math.context.ComputeMetrics;
+import mathutils.math.context.ResultCache;
+
+public class BigDecimalMathTest {
+
+	private static final String PI_200 = "3.14159265358979323846264338327950288419716939937510582097494459230781640628620899862803482534211706798214808651328230664709384460955058223172535940812848111745028410270193852110555964462294895493038196";
+
+	private static final String E_100 = "2.718281828459045235360287471352662497757247093699959574966967627724076630353547594571382178525166427";
+	private static final String LN2_100 = "0.6931471805599453094172321214581765680755001343602552541206800094933936219696947156058633269964186875";
+	private static final String SQRT2_100 = "1.414213562373095048801688724209698078569671875376948073176679737990732478462107038850387534327641573";
+
+	private static BigDecimal digits(String value, int precision) {
+		return new BigDecimal(value).round(new MathContext(precision));
+	}
+
+	@Test
+	public void testPi() {
+		assertEquals(digits(PI_200, 50), BigDecimalMath.pi(new ComputeContext(1000, 50)));
+		assertEquals(digits(PI_200, 200), BigDecimalMath.pi(new ComputeContext(1000, 200)));
+	}
+
+	@Test
+	public void testPiConstant() {
+		assertEquals(digits(PI_200, 100), BigDecimalMath.PI);
+	}
+
+	@Test
+	public void testConstants() {
+		ComputeContext cc = new ComputeContext(1000, 90);
+		assertEquals(digits(E_100, 90), BigDecimalMath.e(cc));
+		assertEquals(digits(LN2_100, 90), BigDecimalMath.ln2(cc));
+		assertEquals(digits(SQRT2_100, 90), BigDecimalMath.sqrt2(cc));
+		assertEquals(digits(E_100, 20), BigDecimalMath.e(new ComputeContext(1000, 20)));
+		assertEquals(digits(E_100, 100), BigDecimalMath.E);
+	}
+
+	@Test
+	public void testAdaptiveTermination() {
+		ComputeContext cc = new ComputeContext(1000, 30);
+		BigDecimal adaptive = BigDecimalMath.exp(new BigDecimal("0.5"), cc);
+		int terms = cc.getTermsUsed();
+		assertTrue(terms > 1 && terms < 100);
+		cc.setAdaptive(false);
+		BigDecimal full = BigDecimalMath.exp(new BigDecimal("0.5"), cc);
+		assertEquals(1000, cc.getTermsUsed());
+		assertEquals(full.round(new MathContext(28)), adaptive.round(new MathContext(28)));
+	}
+
+	@Test
+	public void testSeries() {
+		ComputeContext cc = new ComputeContext(1000, 60);
+		assertEquals(digits(PI_200, 58),
+				BigDecimalMath.arcsin(new BigDecimal("0.5"), cc).multiply(new BigDecimal(6)).round(new MathContext(58)));
+		assertEquals(digits(E_100, 60), BigDecimalMath.exp(BigDecimal.ONE, cc));
+		assertEquals(digits("0.4636476090008061162142562314612144020285370542861202638109330887201978641657417053", 60),
+				BigDecimalMath.arctan(new BigDecimal("0.5"), cc));
+	}
+
+	@Test
+	public void testArgumentReduction() {
+		ComputeContext cc = new ComputeContext(1000, 40);
+		assertEquals(new BigDecimal("-0.8522008497671888017727058937530293682618"),
+				BigDecimalMath.sin(new BigDecimal("1e22"), cc));
+		assertEquals(new BigDecimal("-0.7896724934293100827102895399174077539601"),
+				BigDecimalMath.sin(new BigDecimal("1e50"), cc));
+		BigDecimal sin = BigDecimalMath.sin(new BigDecimal("-2.5"), cc);
+		BigDecimal cos = BigDecimalMath.cos(new BigDecimal("-2.5"), cc);
+		assertEquals(0, BigDecimal.ONE.compareTo(sin.multiply(sin).add(cos.multiply(cos)).round(new MathContext(38))));
+	}
+
+	@Test
+	public void testZeroIterations() {
+		ComputeContext cc = new ComputeContext(0, 60);
+		ComputeContext reference = new ComputeContext(1000, 60);
+		BigDecimal x = new BigDecimal("0.7");
+		assertEquals(BigDecimalMath.sin(x, reference), BigDecimalMath.sin(x, cc));
+		assertEquals(BigDecimalMath.cos(x, reference), BigDecimalMath.cos(x, cc));
+		assertEquals(BigDecimalMath.tan(x, reference), BigDecimalMath.tan(x, cc));
+		assertEquals(BigDecimalMath.arctan(x, reference), BigDecimalMath.arctan(x, cc));
+		assertEquals(digits(E_100, 60), BigDecimalMath.exp(BigDecimal.ONE, cc));
+
+		// a single term is only the constant of a series, so at least two are summed
+		ComputeContext one = new ComputeContext(1, 60);
+		for (MathFunction function : new MathFunction[] { MathFunction.EXP, MathFunction.SINH, MathFunction.COSH,
+				MathFunction.TANH, MathFunction.LN, MathFunction.LOG10, MathFunction.LOG2, MathFunction.SIN,
+				MathFunction.ARCTAN, MathFunction.GAMMA, MathFunction.LN_GAMMA }) {
+			assertEquals(function.name(), function.apply(x, reference), function.apply(x, one));
+		}
+	}
+
+	@Test
+	public void testExpScaling() {
+		ComputeContext cc = new ComputeContext(1000, 40);
+		assertEquals(new BigDecimal("1.803257987111117781010927667254378087380E-54"),
+				BigDecimalMath.exp(new BigDecimal("-123.75"), cc));
+		assertEquals(digits(E_100, 40), BigDecimalMath.exp(BigDecimal.ONE, cc));
+		assertEquals(BigDecimal.ONE, BigDecimalMath.exp(BigDecimal.ZERO, cc));
+	}
+
+	@Test
+	public void testFactorial() {
+		BigDecimal expected = BigDecimal.ONE;
+		for (int n = 0; n <= 1200; n++) {
+			if (n > 0) {
+				expected = expected.multiply(new BigDecimal(n));
+			}
+			assertEquals(expected, BigDecimalMath.factorial(new BigDecimal(n)));
+		}
+	}
+
+	@Test
+	public void testDoubleFactorial() {
+		assertEquals(new BigDecimal(3), BigDecimalMath.doubleFactorial(new BigDecimal(3), false));
+		assertEquals(new BigDecimal(48), BigDecimalMath.doubleFactorial(new BigDecimal(6), false));
+		assertEquals(new BigDecimal(8), BigDecimalMath.doubleFactorial(new BigDecimal(4), true));
+		assertEquals(new BigDecimal(336), BigDecimalMath.doubleFactorial(new BigDecimal(7), true));
+		assertEquals(BigDecimal.ONE, BigDecimalMath.doubleFactorial(new BigDecimal(-1), false));
+		BigDecimal odd = BigDecimal.ONE;
+		for (int n = 3; n <= 301; n += 2) {
+			odd = odd.multiply(new BigDecimal(n));
+		}
+		assertEquals(odd, BigDecimalMath.doubleFactorial(new BigDecimal(301), false));
+	}
+
+	@Test
+	public void testBinomial() {
+		BigDecimal[] row = { BigDecimal.ONE };
+		for (int n = 1; n <= 150; n++) {
+			BigDecimal[] next = new BigDecimal[n + 1];
+			next[0] = next[n] = BigDecimal.ONE;
+			for (int k = 1; k < n; k++) {
+				next[k] = row[k - 1].add(row[k]);
+			}
+			row = next;
+		}
+		for (int k = 0; k <= 150; k++) {
+			assertEquals(row[k], BigDecimalMath.binomial(new BigDecimal(150), new BigDecimal(k)));
+		}
+		assertEquals(BigDecimal.ZERO, BigDecimalMath.binomial(new BigDecimal(5), new BigDecimal(6)));
+	}
+
+	@Test
+	public void testPow() {
+		ComputeContext cc = new ComputeContext(1000, 40);
+		assertEquals(new BigDecimal(1024), BigDecimalMath.pow(new BigDecimal(2), new BigDecimal(10), cc));
+		assertEquals(new BigDecimal("-0.125"), BigDecimalMath.pow(new BigDecimal(-2), new BigDecimal(-3), cc));
+		assertEquals(BigDecimal.ONE, BigDecimalMath.pow(BigDecimal.ZERO, BigDecimal.ZERO, cc));
+		assertEquals(digits(SQRT2_100, 40), BigDecimalMath.pow(new BigDecimal(2), new BigDecimal("0.5"), cc));
+		assertEquals(new BigDecimal("3.436680641433237995328116346023276460570"),
+				BigDecimalMath.pow(new BigDecimal("1.0001"), new BigDecimal("12345.678"), cc));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testPowNegativeBase() {
+		BigDecimalMath.pow(new BigDecimal(-2), new BigDecimal("0.5"), new ComputeContext(1000, 40));
+	}
+
+	@Test
+	public void testLogarithms() {
+		ComputeContext cc = new ComputeContext(1000, 50);
+		assertEquals(digits(LN2_100, 50), BigDecimalMath.ln(new BigDecimal(2), cc));
+		assertEquals(new BigDecimal("-0.0010005003335835335001429822540683449607552052504344"),
+				BigDecimalMath.ln(new BigDecimal("0.999"), cc));
+		assertEquals(new BigDecimal(3), BigDecimalMath.log10(new BigDecimal(1000), cc));
+		assertEquals(new BigDecimal(-2), BigDecimalMath.log10(new BigDecimal("0.01"), cc));
+		assertEquals(0, new BigDecimal(5).compareTo(BigDecimalMath.log2(new BigDecimal(32), cc)));
+		assertEquals(0, new BigDecimal(4).compareTo(BigDecimalMath.log(new BigDecimal(81), new BigDecimal(3), cc)));
+		assertEquals(digits(LN2_100, 90), BigDecimalMath.ln(new BigDecimal(2), new ComputeContext(1000, 90)));
+	}
+
+	@Test
+	public void testSqrtAndRoot() {
+		ComputeContext cc = new ComputeContext(1000, 60);
+		assertEquals(digits(SQRT2_100, 60), BigDecimalMath.sqrt(new BigDecimal(2), cc));
+		assertEquals(new BigDecimal("111.111106555555462166662837722025988808180646432276420222976"),
+				BigDecimalMath.sqrt(new BigDecimal("12345.678"), cc));
+		assertEquals(new BigDecimal("1.38949549437313763712998521735301162211304671449100020494563"),
+				BigDecimalMath.root(BigDecimal.TEN, 7, cc));
+		assertEquals(new BigDecimal("-1.25992104989487316476721060727822835057025146470150798008198"),
+				BigDecimalMath.root(new BigDecimal(-2), 3, cc));
+		assertEquals(new BigDecimal("3.98107170553497250770252305087752043487677037297380446865284"),
+				BigDecimalMath.root(new BigDecimal("0.001"), -5, cc));
+		assertEquals(0, new BigDecimal(3).compareTo(BigDecimalMath.root(new BigDecimal(81), 4, cc)));
+	}
+
+	@Test
+	public void testInverseTrig() {
+		ComputeContext cc = new ComputeContext(1000, 60);
+		assertEquals(new BigDecimal("-1.54580153317597645972960431799007973420503190718570473087914"),
+				BigDecimalMath.arctan(new BigDecimal(-40), cc));
+		assertEquals(new BigDecimal("1.52607123962616318798162545896820037219440414292539472765683"),
+				BigDecimalMath.arcsin(new BigDecimal("0.999"), cc));
+		assertEquals(new BigDecimal("3.14145123223343807782730029144261430332919448285312122540759"),
+				BigDecimalMath.arccos(new BigDecimal("-0.99999999"), cc));
+		assertEquals(digits(PI_200, 58),
+				BigDecimalMath.arctan(BigDecimal.ONE, cc).multiply(new BigDecimal(4)).round(new MathContext(58)));
+		assertEquals(digits(PI_200, 60), BigDecimalMath.arccos(BigDecimal.ONE.negate(), cc));
+	}
+
+	@Test
+	public void testBatch() {
+		BigDecimal[] x = new BigDecimal[50];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = new BigDecimal(i * i - 400).divide(new BigDecimal(7), new MathContext(30));
+		}
+		ComputeContext cc = new ComputeContext(1000, 80, 10000, BigDecimal.ROUND_HALF_UP, 3);
+		BigDecimal[] sin = new BigDecimal[x.length];
+		BigDecimal[] cos = new BigDecimal[x.length];
+		BigDecimal[] exp = new BigDecimal[x.length];
+		BigDecimalMath.sin(x, sin, cc);
+		BigDecimalMath.cos(x, cos, cc);
+		BigDecimalMath.exp(x, exp, cc);
+		for (int i = 0; i < x.length; i++) {
+			assertEquals(BigDecimalMath.sin(x[i], cc), sin[i]);
+			assertEquals(BigDecimalMath.cos(x[i], cc), cos[i]);
+			assertEquals(BigDecimalMath.exp(x[i], cc), exp[i]);
+		}
+	}
+
+	@Test
+	public void testParallel() {
+		ComputeContext sequential = new ComputeContext(1000, 8000);
+		ComputeContext parallel = new ComputeContext(1000, 8000, 10000, BigDecimal.ROUND_HALF_UP, 4);
+		BigDecimal x = new BigDecimal("0.37");
+		assertEquals(BigDecimalMath.exp(x, sequential), BigDecimalMath.exp(x, parallel));
+		assertEquals(BigDecimalMath.sin(x, sequential), BigDecimalMath.sin(x, parallel));
+		assertEquals(digits(PI_200, 200), BigDecimalMath.pi(parallel).round(new MathContext(200)));
+
+		BigInteger product = BigInteger.ONE;
+		for (int i = 2; i <= 5000; i++) {
+			product = product.multiply(BigInteger.valueOf(i));
+		}
+		assertEquals(new BigDecimal(product), BigDecimalMath.factorial(new BigDecimal(5000), parallel));
+	}
+
+	@Test
+	public void testSincos() {
+		ComputeContext cc = new ComputeContext(1000, 60);
+		BigDecimal theta = new BigDecimal("-7.3");
+		BigDecimal[] sincos = BigDecimalMath.sincos(theta, cc);
+		assertEquals(BigDecimalMath.sin(theta, cc), sincos[0]);
+		assertEquals(BigDecimalMath.cos(theta, cc), sincos[1]);
+	}
+
+	@Test
+	public void testHyperbolic() {
+		ComputeContext cc = new ComputeContext(1000, 50);
+		BigDecimal x = new BigDecimal("0.5");
+		assertEquals(new BigDecimal("0.52109530549374736162242562641149155910592898261148"), BigDecimalMath.sinh(x, cc));
+		assertEquals(new BigDecimal("1.1276259652063807852262251614026720125478471180987"), BigDecimalMath.cosh(x, cc));
+		assertEquals(new BigDecimal("0.46211715726000975850231848364367254873028928033011"), BigDecimalMath.tanh(x, cc));
+		assertEquals(new BigDecimal("1.0000000000000000166666666666666667500000000000000E-8"),
+				BigDecimalMath.sinh(new BigDecimal("1e-8"), cc));
+		assertEquals(BigDecimal.ONE.negate(), BigDecimalMath.tanh(new BigDecimal(-500), cc));
+	}
+
+	@Test
+	public void testGamma() {
+		ComputeContext cc = new ComputeContext(1000, 50);
+		assertEquals(new BigDecimal("2.9915689876875906283125165159049177911128060249217"), BigDecimalMath.gamma(new BigDecimal("0.3"), cc));
+		assertEquals(new BigDecimal("0.00031214593597195230688387614780317713850359424893379"), BigDecimalMath.gamma(new BigDecimal("-7.9"), cc));
+		assertEquals(new BigDecimal("1129.9037609776440874790653651549989052784489507590"), BigDecimalMath.lnGamma(new BigDecimal("250.25"), cc));
+		assertEquals(new BigDecimal(120), BigDecimalMath.gamma(new BigDecimal(6), cc));
+		BigDecimal sqrtPi = BigDecimalMath.sqrt(BigDecimalMath.pi(cc), cc);
+		assertEquals(sqrtPi, BigDecimalMath.gamma(new BigDecimal("0.5"), cc));
+		assertEquals(new BigDecimal("-0.94530872048294188122568932444861076415869304326527"), BigDecimalMath.gamma(new BigDecimal("-2.5"), cc));
+		assertEquals(BigDecimal.ONE.divide(new BigDecimal(60), new MathContext(50)),
+				BigDecimalMath.beta(new BigDecimal(3), new BigDecimal(4), cc));
+		assertEquals(new BigDecimal("0.19634954084936207740391521145496893026232308746094"),
+				BigDecimalMath.beta(new BigDecimal("2.5"), new BigDecimal("1.5"), cc));
+	}
+
+	@Test
+	public void testFinalPrecision() {
+		ComputeContext cc = new ComputeContext(1000, 5000, 40);
+		assertEquals(40, cc.getAsMathContext().getPrecision());
+		assertEquals(new BigDecimal("0.8414709848078965066525023216302989996226"), BigDecimalMath.sin(BigDecimal.ONE, cc));
+		assertEquals(new BigDecimal("1.098612288668109691395245236922525704647"), BigDecimalMath.ln(new BigDecimal(3), cc));
+		assertEquals(45, cc.withPrecision(45).getResultPrecision());
+	}
+
+	@Test
+	public void testBall() {
+		ComputeContext cc = new ComputeContext(1000, 40);
+		BigDecimalBall ball = MathFunction.SIN.ball(BigDecimal.ONE, cc);
+		assertEquals(BigDecimalMath.sin(BigDecimal.ONE, cc), ball.getMidpoint());
+		assertTrue(ball.contains(new BigDecimal("0.841470984807896506652502321630298999622563060798371065672752")));
+		assertTrue(ball.getCorrectDigits() >= 39);
+		BigDecimalBall ln = MathFunction.LN.ball(new BigDecimal(3), cc);
+		assertTrue(ln.contains(new BigDecimal("1.09861228866810969139524523692252570464749055782274945173469")));
+		assertEquals(BigDecimal.ZERO, MathFunction.LN.ball(BigDecimal.ONE, cc).getRadius());
+	}
+
+	@Test
+	public void testFastPath() {
+		BigDecimal x = new BigDecimal("0.7315");
+		for (int precision : new int[] { 12, 25 }) {
+			ComputeContext cc = new ComputeContext(1000, precision);
+			MathContext mc = new MathContext(precision);
+			for (MathFunction function : new MathFunction[] { MathFunction.SIN, MathFunction.EXP, MathFunction.LN }) {
+				BigDecimal expected = function.apply(x, new ComputeContext(1000, 60)).round(mc);
+				assertEquals(expected, function.apply(x, cc));
+				assertEquals(0, cc.getTermsUsed());
+			}
+		}
+		assertEquals(new BigDecimal("2.643383280E-21"),
+				BigDecimalMath.sin(new BigDecimal("3.14159265358979323846"), new ComputeContext(1000, 10)));
+	}
+
+	@Test
+	public void testDigitWriter() throws IOException {
+		Random random = new Random(1);
+		for (int i = 0; i < 200; i++) {
+			BigDecimal d = new BigDecimal(new BigInteger(1 + random.nextInt(4000), random), random.nextInt(800) - 400);
+			StringBuilder out = new StringBuilder();
+			new DigitWriter().write(d.negate(), out);
+			assertEquals(d.negate().toPlainString(), out.toString());
+		}
+		StringBuilder grouped = new StringBuilder();
+		new DigitWriter(3, " ", 0).write(new BigDecimal("-1234567.891234"), grouped);
+		assertEquals("-1 234 567.891 234", grouped.toString());
+		String n = System.lineSeparator();
+		grouped.setLength(0);
+		new DigitWriter(5, " ", 12).write(new BigDecimal("3.14159265358979323846"), grouped);
+		assertEquals("3.14159" + n + "26535 89793" + n + "23846" + n, grouped.toString());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DigitWriter(4).write(new BigDecimal(PI_200), Channels.newChannel(bytes), 10);
+		assertEquals("3.14" + n + "1592" + n + "65" + n, bytes.toString("UTF-8"));
+	}
+
+	@Test
+	public void testConstantStore() throws IOException {
+		Path directory = Files.createTempDirectory("constants");
+		try {
+			ConstantStore store = new ConstantStore(directory);
+			BigDecimal value = new BigDecimal(PI_200);
+			store.save("test", value, 190);
+			assertEquals(value, store.load("test").getValue());
+			assertEquals(190, store.load("test").getDigits());
+			store.save("test", BigDecimal.ONE, 10);
+			assertEquals(value, store.load("test").getValue());
+
+			Path file = directory.resolve("test.bdc");
+			byte[] bytes = Files.readAllBytes(file);
+			bytes[bytes.length - 1] ^= 1;
+			Files.write(file, bytes);
+			assertEquals(null, store.load("test"));
+
+			BigDecimalMath.setConstantStore(store);
+			ComputeContext cc = new ComputeContext(1000, 12345, 12345);
+			BigDecimal pi = BigDecimalMath.pi(cc);
+			assertEquals(pi, store.load("pi").getValue().round(cc.getAsMathContext()));
+		} finally {
+			BigDecimalMath.setConstantStore(null);
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+				for (Path file : files) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testDigitSpigot() throws IOException, ClassNotFoundException {
+		String pi = PI_200.replace(".", "").substring(0, 201);
+		DigitSpigot spigot = BigDecimalMath.piDigits();
+		StringBuilder digits = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			digits.append(spigot.nextInt());
+		}
+		assertEquals(100, spigot.getPosition());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(spigot.checkpoint());
+		}
+		DigitSpigot.Checkpoint checkpoint;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			checkpoint = (DigitSpigot.Checkpoint) in.readObject();
+		}
+		DigitSpigot resumed = DigitSpigot.resume(checkpoint);
+		resumed.stream().limit(100).forEach(digits::append);
+		assertEquals(pi.substring(0, 200), digits.toString());
+		assertEquals(200, resumed.getPosition());
+		assertEquals(pi.charAt(100) - '0', spigot.nextInt());
+
+		StringBuilder e = new StringBuilder();
+		BigDecimalMath.eDigits().stream().limit(100).forEach(e::append);
+		assertEquals(E_100.replace(".", "").substring(0, 100), e.toString());
+	}
+
+	@Test
+	public void testChebyshev() {
+		ComputeContext cc = new ComputeContext(1000, 50);
+		cc.setChebyshev(true);
+		assertTrue(cc.withPrecision(60).isChebyshev());
+		assertEquals(digits(E_100, 50), BigDecimalMath.exp(BigDecimal.ONE, cc));
+		assertTrue(cc.getTermsUsed() > 0);
+
+		ComputeContext series = new ComputeContext(1000, 50);
+		Random random = new Random(7);
+		for (int i = 0; i < 50; i++) {
+			BigDecimal x = new BigDecimal(random.nextDouble() * 40 - 20);
+			assertEquals(BigDecimalMath.sin(x, series), BigDecimalMath.sin(x, cc));
+			assertEquals(BigDecimalMath.cos(x, series), BigDecimalMath.cos(x, cc));
+			assertEquals(BigDecimalMath.exp(x, series), BigDecimalMath.exp(x, cc));
+		}
+
+		// tiny angles and angles close to a multiple of pi keep their relative accuracy
+		BigDecimal[] angles = { new BigDecimal("1.234567e-30"), new BigDecimal(PI_200).add(new BigDecimal("1e-25")),
+				new BigDecimal(PI_200).multiply(new BigDecimal(7)).subtract(new BigDecimal("3e-40")) };
+		for (BigDecimal x : angles) {
+			assertEquals(BigDecimalMath.sin(x, series), BigDecimalMath.sin(x, cc));
+			assertEquals(BigDecimalMath.tan(x, series), BigDecimalMath.tan(x, cc));
+		}
+
+		// tables are built with the context of the caller and only kept once complete
+		ComputeContext cancelled = new ComputeContext(1000, 37);
+		cancelled.setChebyshev(true);
+		CancellationToken token = new CancellationToken();
+		cancelled.setCancellationToken(token);
+		cancelled.setProgressListener((step, done, total) -> {
+			if (step.equals("chebyshev") && done == 3) {
+				token.cancel();
+			}
+		});
+		try {
+			BigDecimalMath.exp(new BigDecimal("0.3"), cancelled);
+			fail();
+		} catch (CancellationException e) {
+		}
+		cancelled.setCancellationToken(null);
+		assertEquals(BigDecimalMath.exp(new BigDecimal("0.3"), new ComputeContext(1000, 37)),
+				BigDecimalMath.exp(new BigDecimal("0.3"), cancelled));
+	}
+
+	@Test
+	public void testCancellation() {
+		ComputeContext cc = new ComputeContext(1000, 20000, 20000);
+		CancellationToken token = new CancellationToken();
+		token.cancel();
+		cc.setCancellationToken(token);
+		try {
+			BigDecimalMath.exp(new BigDecimal("1.5"), cc);
+			fail();
+		} catch (CancellationException e) {
+			// expected
+		}
+
+		ComputeContext timed = new ComputeContext(1000, 20000, 20000);
+		timed.setTimeout(1, TimeUnit.MILLISECONDS);
+		try {
+			BigDecimalMath.ln(new BigDecimal("7.3"), timed);
+			fail();
+		} catch (CancellationException e) {
+			// expected
+		}
+
+		ComputeContext reported = new ComputeContext(1000, 2000, 2000);
+		List<String> steps = new ArrayList<String>();
+		reported.setProgressListener((step, done, total) -> steps.add(step + " " + done + "/" + total));
+		reported.setTimeout(1, TimeUnit.MINUTES);
+		assertEquals(digits(SQRT2_100, 100), BigDecimalMath.sqrt(new BigDecimal(2), reported).round(new MathContext(100)));
+		assertTrue(steps.contains("newton 14/2008"));
+		assertTrue(reported.withPrecision(10).hasDeadline());
+	}
+
+	@Test
+	public void testMetrics() {
+		List<ComputeMetrics.Sample> samples = new ArrayList<ComputeMetrics.Sample>();
+		ComputeMetrics metrics = new ComputeMetrics(samples::add);
+		ComputeContext cc = new ComputeContext(1000, 60);
+		cc.setMetrics(metrics);
+		assertEquals(digits(E_100, 60), BigDecimalMath.exp(BigDecimal.ONE, cc));
+		BigDecimalMath.exp(new BigDecimal("0.25"), cc);
+		BigDecimalMath.sin(new BigDecimal(3), cc);
+		BigDecimalMath.ln(new BigDecimal(3), cc);
+
+		ComputeMetrics.FunctionMetrics exp = metrics.get("exp");
+		assertEquals(2, exp.getCalls());
+		assertTrue(exp.getTerms() > 0);
+		assertTrue(exp.getReductionSteps() > 0);
+		assertEquals(2, exp.getTimeHistogram().getTotal());
+		assertEquals(2, exp.getPrecisionHistogram().getCount(ComputeMetrics.Histogram.bucket(70)));
+		assertEquals(1, metrics.get("sin").getCalls());
+		// the exponentials inside ln are counted as part of it
+		assertEquals(1, metrics.get("ln").getCalls());
+		assertEquals(2, metrics.get("exp").getCalls());
+		assertEquals(4, samples.size());
+		assertEquals(samples.get(3).getTerms(), cc.getTermsUsed());
+		assertEquals(3, metrics.getAll().size());
+
+		metrics.reset();
+		assertEquals(null, metrics.get("exp"));
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		AsyncBigDecimalMath async = new AsyncBigDecimalMath(tasks::add);
+		ComputeContext cc = new ComputeContext(1000, 60);
+		CompletableFuture<BigDecimal> first = async.exp(BigDecimal.ONE, cc);
+		CompletableFuture<BigDecimal> second = async.exp(BigDecimal.ONE, new ComputeContext(1000, 60));
+		CompletableFuture<BigDecimal> other = async.exp(BigDecimal.ONE, new ComputeContext(1000, 40));
+		assertEquals(2, tasks.size());
+		assertEquals(2, async.getInFlight());
+
+		// cancelling one caller leaves the shared computation running
+		second.cancel(false);
+		for (Runnable task : tasks) {
+			task.run();
+		}
+		assertEquals(digits(E_100, 60), first.get());
+		assertTrue(second.isCancelled());
+		assertEquals(digits(E_100, 40), other.get());
+		assertEquals(0, async.getInFlight());
+
+		CompletableFuture<BigDecimal> failed = async.ln(new BigDecimal(-1), cc);
+		tasks.get(2).run();
+		assertTrue(failed.isCompletedExceptionally());
+
+		// arguments that differ in scale are not shared, since factorial rejects decimals
+		CompletableFuture<BigDecimal> factorial = async.factorial(new BigDecimal(30), cc);
+		CompletableFuture<BigDecimal> decimal = async.factorial(new BigDecimal("30.0"), cc);
+		assertEquals(5, tasks.size());
+		tasks.get(3).run();
+		tasks.get(4).run();
+		assertEquals(new BigDecimal("265252859812191058636308480000000"), factorial.get());
+		assertTrue(decimal.isCompletedExceptionally());
+
+		// callers that give up through their own deadline or token do not stop the others
+		BigDecimal x = new BigDecimal("0.3");
+		ComputeContext expired = new ComputeContext(1000, 500);
+		expired.setDeadline(System.nanoTime() - 1);
+		ComputeContext cancelled = new ComputeContext(1000, 500);
+		cancelled.setCancellationToken(new CancellationToken());
+		cancelled.getCancellationToken().cancel();
+		CompletableFuture<BigDecimal> late = async.exp(x, expired);
+		CompletableFuture<BigDecimal> stopped = async.exp(x, cancelled);
+		CompletableFuture<BigDecimal> waiting = async.exp(x, new ComputeContext(1000, 500));
+		assertEquals(6, tasks.size());
+		tasks.get(5).run();
+		assertEquals(BigDecimalMath.exp(x, new ComputeContext(1000, 500)), waiting.get());
+		assertTrue(late.handle((value, e) -> e).get() instanceof CancellationException);
+		assertTrue(stopped.handle((value, e) -> e).get() instanceof CancellationException);
+
+		// callers give up on time even while their computation is still queued
+		ComputeContext timeout = new ComputeContext(1000, 50);
+		timeout.setTimeout(50, TimeUnit.MILLISECONDS);
+		ComputeContext token = new ComputeContext(1000, 50);
+		token.setCancellationToken(new CancellationToken());
+		CompletableFuture<BigDecimal> queued = async.sqrt(new BigDecimal(2), timeout);
+		CompletableFuture<BigDecimal> queuedToken = async.sqrt(new BigDecimal(3), token);
+		token.getCancellationToken().cancel();
+		assertTrue(queued.handle((value, e) -> e).get(10, TimeUnit.SECONDS) instanceof CancellationException);
+		assertTrue(queuedToken.handle((value, e) -> e).get(10, TimeUnit.SECONDS) instanceof CancellationException);
+		tasks.get(6).run();
+		tasks.get(7).run();
+
+		// the computation stops once every caller has given up
+		ComputeMetrics metrics = new ComputeMetrics();
+		ComputeContext measured = new ComputeContext(1000, 500);
+		measured.setMetrics(metrics);
+		async.exp(x, measured).cancel(false);
+		tasks.get(8).run();
+		assertEquals(null, metrics.get("exp"));
+		assertEquals(0, async.getInFlight());
+
+		AsyncBigDecimalMath pool = AsyncBigDecimalMath.withParallelism(2);
+		assertEquals(digits(PI_200, 100), pool.pi(new ComputeContext(1000, 100)).get(1, TimeUnit.MINUTES));
+		pool.close();
+		assertTrue(pool.e(new ComputeContext(1000, 100)).isCompletedExceptionally());
+		try (AsyncBigDecimalMath threads = new AsyncBigDecimalMath()) {
+			assertEquals(digits(SQRT2_100, 50), threads.sqrt(new BigDecimal(2), new ComputeContext(1000, 50))
+					.get(1, TimeUnit.MINUTES));
+		}
+		// an executor that was passed in is not shut down
+		async.close();
+		async.exp(x, cc);
+		assertEquals(10, tasks.size());
+	}
+
+	@Test
+	public void testResultCache() {
+		ResultCache cache = new ResultCache(2);
+		ComputeContext cc = new ComputeContext(1000, 60);
+		cc.setResultCache(cache);
+		assertEquals(digits(E_100, 60), BigDecimalMath.exp(BigDecimal.ONE, cc));
+		assertTrue(cc.getTermsUsed() > 0);
+		assertEquals(digits(E_100, 60), BigDecimalMath.exp(BigDecimal.ONE, cc));
+		assertEquals(0, cc.getTermsUsed());
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// a cached result answers requests for fewer digits, but not for more
+		ComputeContext lower = cc.withPrecision(40);
+		assertEquals(digits(E_100, 40), BigDecimalMath.exp(BigDecimal.ONE, lower));
+		assertEquals(40, BigDecimalMath.exp(BigDecimal.ONE, lower).precision());
+		assertEquals(3, cache.getHits());
+		ComputeContext higher = cc.withPrecision(80);
+		assertEquals(digits(E_100, 80), BigDecimalMath.exp(BigDecimal.ONE, higher));
+		assertEquals(2, cache.getMisses());
+		assertEquals(digits(E_100, 60), BigDecimalMath.exp(BigDecimal.ONE, cc));
+		assertEquals(4, cache.getHits());
+
+		// functions are cached apart, and the least recently used is evicted
+		assertEquals(digits(SQRT2_100, 60), BigDecimalMath.sqrt(new BigDecimal(2), cc));
+		BigDecimalMath.pow(new BigDecimal(2), new BigDecimal("0.5"), cc);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		BigDecimalMath.exp(BigDecimal.ONE, cc);
+		assertEquals(4, cache.getHits());
+		assertEquals(5, cache.getMisses());
+		assertEquals(4.0 / 9, cache.getHitRate(), 1e-12);
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+
+		// contexts with different settings that share the cache do not share results
+		ComputeContext few = new ComputeContext(2, 50);
+		few.setAdaptive(false);
+		few.setResultCache(cache);
+		ComputeContext chebyshev = new ComputeContext(1000, 50);
+		chebyshev.setChebyshev(true);
+		chebyshev.setResultCache(cache);
+		ComputeContext many = new ComputeContext(1000, 50);
+		many.setResultCache(cache);
+		BigDecimal x = new BigDecimal("0.7");
+		BigDecimalMath.exp(x, few);
+		BigDecimalMath.exp(x, chebyshev);
+		assertEquals(BigDecimalMath.exp(x, new ComputeContext(1000, 50)), BigDecimalMath.exp(x, many));
+		assertEquals(0, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		BigDecimalMath.exp(x, many);
+		assertEquals(1, cache.getHits());
+		cache.clear();
+
+		// arguments that differ in scale are cached apart
+		BigDecimalMath.exp(BigDecimal.ONE, cc);
+		BigDecimalMath.exp(new BigDecimal("1.00"), cc);
+		assertEquals(2, cache.getMisses());
+		assertEquals(0, cache.getHits());
+		cache.clear();
+
+		// exact results keep all their digits at any precision
+		BigDecimal factorial = new BigDecimal("265252859812191058636308480000000");
+		assertEquals(factorial, BigDecimalMath.factorial(new BigDecimal(30), cc.withPrecision(50)));
+		assertEquals(factorial, BigDecimalMath.factorial(new BigDecimal(30), cc.withPrecision(20)));
+		assertEquals(factorial, BigDecimalMath.gamma(new BigDecimal(31), cc.withPrecision(50)));
+		assertEquals(BigDecimalMath.gamma(new BigDecimal(31), new ComputeContext(1000, 20)),
+				BigDecimalMath.gamma(new BigDecimal(31), cc.withPrecision(20)));
+		assertEquals(new BigDecimal(-5), BigDecimalMath.log10(new BigDecimal("0.00001"), cc));
+		assertEquals(0, cache.size());
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testGammaPole() {
+		BigDecimalMath.gamma(new BigDecimal(-3), new ComputeContext(1000, 20));
+	}
+
+	@Test(expected = ArithmeticException.class)
+	public void testEvenRootOfNegative() {
+		BigDecimalMath.root(new BigDecimal(-16), 4, new ComputeContext(1000, 20));
+	}
+
+}